@@ -2,12 +2,19 @@ package jszuru;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.ToNumberStrategy;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import jszuru.exceptions.SzurubooruHTTPException;
 import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 import jszuru.resources.*;
+import jszuru.search.SzurubooruCompactPostList;
+import jszuru.search.SzurubooruPostCursor;
 import jszuru.search.SzurubooruSearch;
 import jszuru.search.SzurubooruSearchResult;
+import jszuru.search.SzurubooruTagResolution;
 import org.apache.http.*;
 import org.apache.http.client.methods.*;
 import org.apache.http.client.utils.URLEncodedUtils;
@@ -15,18 +22,30 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @SuppressWarnings("unused")
-public class SzurubooruAPI {
+public class SzurubooruAPI implements Closeable {
     private final String urlScheme;
     private final String urlNetLocation;
     private String urlPathPrefix;
@@ -36,12 +55,40 @@ public class SzurubooruAPI {
     private final HashMap<String, String> apiHeaders;
     private String username = null;
 
+    private int maxConnectionsPerRoute;
+    private int maxConnectionsTotal;
+    private long connectionIdleTimeout;
+    private long keepAliveDuration;
+    private transient CloseableHttpClient httpClient = null;
+    private transient SzurubooruAsyncAPI asyncApi = null;
+    private transient Gson gson;
+    private transient SzurubooruResourceCache resourceCache = null;
+    private transient SzurubooruTagDictionary tagDictionary;
+    private transient SzurubooruRetryPolicy retryPolicy = null;
+    private transient List<SzurubooruTagListener> tagListeners;
+    private transient SzurubooruCategoryCache categoryCache;
+    private transient boolean internPostTags = false;
+
+    // The server caps search pages at 100 results, and overly long queries risk hitting URL length limits
+    protected static final int RESOLVE_TAGS_CHUNK_SIZE = 100;
+    protected static final int RESOLVE_TAGS_QUERY_LENGTH = 2000;
+
     public static class APIBuilder{
         private String baseUrl = null;
         private String username = null;
         private String password = null;
         private String token = null;
         private String apiUri = "/api";
+        private int maxConnectionsPerRoute = 20;
+        private int maxConnectionsTotal = 50;
+        private Duration connectionIdleTimeout = Duration.ofSeconds(30);
+        private Duration keepAliveDuration = Duration.ofSeconds(60);
+        private ToNumberStrategy numberStrategy = INTEGER_OR_DOUBLE;
+        private int resourceCacheSize = 0;
+        private Duration resourceCacheTimeToLive = Duration.ofMinutes(5);
+        private SzurubooruRetryPolicy retryPolicy = null;
+        private Duration categoryCacheTimeToLive = Duration.ofMinutes(5);
+        private boolean internPostTags = false;
 
         public APIBuilder(){}
 
@@ -65,12 +112,91 @@ public class SzurubooruAPI {
             this.token = token;
             return this;
         }
+        public APIBuilder setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            if(maxConnectionsPerRoute <= 0) throw new IllegalArgumentException("Max connections per route must be positive");
+
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+        public APIBuilder setMaxConnectionsTotal(int maxConnectionsTotal) {
+            if(maxConnectionsTotal <= 0) throw new IllegalArgumentException("Max total connections must be positive");
+
+            this.maxConnectionsTotal = maxConnectionsTotal;
+            return this;
+        }
+        public APIBuilder setConnectionIdleTimeout(Duration connectionIdleTimeout) {
+            this.connectionIdleTimeout = Objects.requireNonNull(connectionIdleTimeout);
+            return this;
+        }
+        public APIBuilder setKeepAliveDuration(Duration keepAliveDuration) {
+            this.keepAliveDuration = Objects.requireNonNull(keepAliveDuration);
+            return this;
+        }
+        public APIBuilder setNumberStrategy(ToNumberStrategy numberStrategy) {
+            this.numberStrategy = Objects.requireNonNull(numberStrategy);
+            return this;
+        }
+        // A size of 0 disables the cache, which is the default
+        public APIBuilder setResourceCache(int maxSize, Duration timeToLive) {
+            if(maxSize < 0) throw new IllegalArgumentException("Resource cache size can't be negative");
+
+            this.resourceCacheSize = maxSize;
+            this.resourceCacheTimeToLive = Objects.requireNonNull(timeToLive);
+            return this;
+        }
+
+        // Zero disables the cache, so categories are listed again every time they're needed
+        public APIBuilder setCategoryCacheTimeToLive(Duration timeToLive) {
+            if(timeToLive.isNegative()) throw new IllegalArgumentException("Category cache time to live can't be negative");
+
+            this.categoryCacheTimeToLive = timeToLive;
+            return this;
+        }
+
+        // Posts then share one read-only JSON view per tag from the tag dictionary instead of their own copies.
+        // Saves memory when holding many posts, but the dictionary keeps every tag seen until it's cleared
+        public APIBuilder setInternPostTags(boolean internPostTags) {
+            this.internPostTags = internPostTags;
+            return this;
+        }
+
+        // Without a retry policy, pushes rejected because of a version conflict fail right away
+        public APIBuilder setRetryPolicy(SzurubooruRetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
 
         public SzurubooruAPI build() throws MalformedURLException, URISyntaxException{
             if(baseUrl == null) throw new IllegalStateException("Base url was not set. Please set one with SzurubooruAPI.Builder.setBaseUrl()");
 
-            return new SzurubooruAPI(baseUrl, username, password, token, apiUri);
+            return new SzurubooruAPI(this);
+        }
+    }
+
+    // Integral JSON numbers are parsed once into Integer (or Long) rather than Double, so ids and counts need no conversion
+    public static final ToNumberStrategy INTEGER_OR_DOUBLE = reader -> {
+        String value = reader.nextString();
+
+        try{
+            if(value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0){
+                long longValue = Long.parseLong(value);
+                if(longValue == (int) longValue) return (int) longValue;
+                return longValue;
+            }
+
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e){
+            throw new JsonParseException("Cannot parse " + value + " as a number", e);
         }
+    };
+
+    protected static final Type JSON_OBJECT_TYPE = new TypeToken<Map<String, Object>>(){}.getType();
+    private static final Gson defaultGson = createGson(INTEGER_OR_DOUBLE);
+
+    protected static Gson createGson(ToNumberStrategy numberStrategy){
+        return new GsonBuilder()
+                .setObjectToNumberStrategy(numberStrategy)
+                .create();
     }
 
     protected static Pattern tokenChecker = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
@@ -81,9 +207,22 @@ public class SzurubooruAPI {
     }
     protected static void checkApiResponse(HttpResponse response) throws SzurubooruHTTPException, IOException {
         if(response.getStatusLine().getStatusCode() != 200/*HTTP OK*/){
-            Gson gson = new Gson();
             String content = new String(response.getEntity().getContent().readAllBytes());
-            Map<String, Object> responseMap = gson.fromJson(content, new TypeToken<Map<String, Object>>(){}.getType());
+            checkApiResponse(response.getStatusLine().getStatusCode(), content);
+        }
+    }
+    protected static void checkApiResponse(int statusCode, String content) throws SzurubooruHTTPException {
+        if(statusCode != 200/*HTTP OK*/){
+            Map<String, Object> responseMap;
+
+            try{
+                responseMap = defaultGson.fromJson(content, JSON_OBJECT_TYPE);
+            } catch (JsonParseException e){
+                throw new SzurubooruHTTPException(content);
+            }
+            if(responseMap == null){
+                throw new SzurubooruHTTPException("Empty response with status code " + statusCode);
+            }
 
             String errorName = (String) responseMap.get("name");
             String errorDescription = (String) responseMap.get("description");
@@ -97,6 +236,34 @@ public class SzurubooruAPI {
     }
 
     public SzurubooruAPI(String baseUrl, String username, String password, String token, String apiUri) throws MalformedURLException, URISyntaxException {
+        this(new APIBuilder()
+                .setBaseUrl(baseUrl)
+                .setUsername(username)
+                .setPassword(password)
+                .setToken(token)
+                .setApiUri(apiUri));
+    }
+    protected SzurubooruAPI(APIBuilder builder) throws MalformedURLException, URISyntaxException {
+        String baseUrl = builder.baseUrl;
+        String username = builder.username;
+        String password = builder.password;
+        String token = builder.token;
+        String apiUri = builder.apiUri;
+
+        maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        maxConnectionsTotal = Math.max(builder.maxConnectionsTotal, builder.maxConnectionsPerRoute);
+        connectionIdleTimeout = builder.connectionIdleTimeout.toMillis();
+        keepAliveDuration = builder.keepAliveDuration.toMillis();
+        gson = createGson(builder.numberStrategy);
+        tagDictionary = new SzurubooruTagDictionary(this);
+        tagListeners = new CopyOnWriteArrayList<>();
+        categoryCache = new SzurubooruCategoryCache(builder.categoryCacheTimeToLive);
+        retryPolicy = builder.retryPolicy;
+        internPostTags = builder.internPostTags;
+        if(builder.resourceCacheSize > 0){
+            resourceCache = new SzurubooruResourceCache(builder.resourceCacheSize, builder.resourceCacheTimeToLive);
+        }
+
         URL parsedBaseUrl = new URL(baseUrl);
 
         // Extract Base URL parts
@@ -205,6 +372,56 @@ public class SzurubooruAPI {
                 .toList(), "UTF-8");
     }
 
+    protected synchronized CloseableHttpClient getHttpClient(){
+        // The client is transient, so an API loaded through loadFromConfig() builds its own on first use
+        if(httpClient == null){
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            connectionManager.setMaxTotal(maxConnectionsTotal);
+
+            httpClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy((response, context) -> {
+                        long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                        return serverKeepAlive > 0? Math.min(serverKeepAlive, keepAliveDuration) : keepAliveDuration;
+                    })
+                    .evictExpiredConnections()
+                    .evictIdleConnections(connectionIdleTimeout, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+
+        return httpClient;
+    }
+
+    public synchronized SzurubooruAsyncAPI getAsyncApi(){
+        if(asyncApi == null){
+            asyncApi = new SzurubooruAsyncAPI(this);
+        }
+
+        return asyncApi;
+    }
+    public SzurubooruSession openSession(){
+        return openSession(4);
+    }
+    public SzurubooruSession openSession(int maxConcurrency){
+        return new SzurubooruSession(this, maxConcurrency);
+    }
+    public SzurubooruBulkTagEdit bulkEditTags(String searchQuery){
+        return new SzurubooruBulkTagEdit(this, searchQuery);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(asyncApi != null){
+            asyncApi.close();
+            asyncApi = null;
+        }
+        if(httpClient != null){
+            httpClient.close();
+            httpClient = null;
+        }
+    }
+
     public Map<String, Object> call(String method, List<String> urlParts) throws IOException, SzurubooruHTTPException {
         return call(method, urlParts, null, null);
     }
@@ -212,52 +429,195 @@ public class SzurubooruAPI {
                                        List<String> urlParts,
                                        Map<String, String> urlQuery,
                                        Map<String, Object> body) throws IOException, SzurubooruHTTPException {
-        Gson gson = new Gson();
+        HttpUriRequest httpRequest = createCallRequest(method, urlParts, urlQuery, body);
 
-        try(CloseableHttpClient httpClient = HttpClients.createDefault()){
-            HttpRequest httpRequest = createHttpRequest(method, createApiUrl(urlParts, urlQuery));
-            apiHeaders.forEach(httpRequest::setHeader);
-            httpRequest.setHeader("Content", "application/json");
+        try(CloseableHttpResponse response = getHttpClient().execute(httpRequest)){
+            checkApiResponse(response);
+            String content = new String(response.getEntity().getContent().readAllBytes());
+            return gson.fromJson(content, JSON_OBJECT_TYPE);
+        }
+    }
+    public Map<String, Object> callStreaming(String method,
+                                             List<String> urlParts,
+                                             Map<String, String> urlQuery,
+                                             Map<String, Object> body,
+                                             String streamedField,
+                                             Consumer<Map<String, Object>> elementConsumer) throws IOException, SzurubooruHTTPException {
+        HttpUriRequest httpRequest = createCallRequest(method, urlParts, urlQuery, body);
+
+        try(CloseableHttpResponse response = getHttpClient().execute(httpRequest)){
+            checkApiResponse(response);
 
-            if(body!=null && httpRequest instanceof HttpEntityEnclosingRequest sendRequest){
-                sendRequest.setEntity(new StringEntity(gson.toJson(body), ContentType.APPLICATION_JSON));
+            Map<String, Object> ret = new HashMap<>();
+            JsonReader reader = new JsonReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+
+            // Elements of the streamed array are handed out as soon as they are parsed, while the rest of the body is still downloading
+            try(reader){
+                reader.beginObject();
+                while(reader.hasNext()){
+                    String name = reader.nextName();
+
+                    if(name.equals(streamedField) && reader.peek() == JsonToken.BEGIN_ARRAY){
+                        reader.beginArray();
+                        while(reader.hasNext()){
+                            Map<String, Object> element = gson.fromJson(reader, JSON_OBJECT_TYPE);
+
+                            try{
+                                elementConsumer.accept(element);
+                            } catch (RuntimeException e) {
+                                throw new ConsumerException(e);
+                            }
+                        }
+                        reader.endArray();
+                    }
+                    else{
+                        ret.put(name, gson.fromJson(reader, Object.class));
+                    }
+                }
+                reader.endObject();
+            } catch (ConsumerException e) {
+                // Whatever the consumer threw is its own business, not a parsing error
+                throw e.getCause();
+            } catch (IllegalStateException | JsonParseException e){
+                throw new IOException("Malformed JSON response", e);
             }
 
-            HttpResponse response = httpClient.execute((HttpUriRequest) httpRequest);
+            return ret;
+        }
+    }
+    protected static class ConsumerException extends RuntimeException {
+        protected ConsumerException(RuntimeException cause){
+            super(cause);
+        }
 
-            checkApiResponse(response);
-            String content = new String(response.getEntity().getContent().readAllBytes());
-            return gson.fromJson(content, new TypeToken<Map<String, Object>>(){}.getType());
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
         }
     }
+    protected HttpUriRequest createCallRequest(String method,
+                                               List<String> urlParts,
+                                               Map<String, String> urlQuery,
+                                               Map<String, Object> body){
+        HttpRequest httpRequest = createHttpRequest(method, createApiUrl(urlParts, urlQuery));
+        apiHeaders.forEach(httpRequest::setHeader);
+        httpRequest.setHeader("Content", "application/json");
+
+        if(body!=null && httpRequest instanceof HttpEntityEnclosingRequest sendRequest){
+            sendRequest.setEntity(new StringEntity(gson.toJson(body), ContentType.APPLICATION_JSON));
+        }
 
-    public FileToken uploadFile(String file) throws IOException {
-        return uploadFile(new File(file));
+        return (HttpUriRequest) httpRequest;
     }
 
+    public FileToken uploadFile(String file) throws IOException {
+        return uploadFile(Path.of(file));
+    }
     public FileToken uploadFile(File file) throws IOException {
+        return uploadFile(file.toPath());
+    }
+    public FileToken uploadFile(Path file) throws IOException {
+        return uploadFile(file, null);
+    }
+    public FileToken uploadFile(Path file, SzurubooruUploadListener listener) throws IOException {
+        return uploadFile(SzurubooruUploadBody.of(file, listener));
+    }
+    public FileToken uploadFile(InputStream content, String filename) throws IOException {
+        return uploadFile(content, filename, -1, null);
+    }
+    public FileToken uploadFile(InputStream content, String filename, long contentLength, SzurubooruUploadListener listener) throws IOException {
+        return uploadFile(SzurubooruUploadBody.of(content, filename, contentLength, listener));
+    }
+    public FileToken uploadFile(ByteBuffer content, String filename) throws IOException {
+        return uploadFile(content, filename, null);
+    }
+    public FileToken uploadFile(ByteBuffer content, String filename, SzurubooruUploadListener listener) throws IOException {
+        return uploadFile(SzurubooruUploadBody.of(content, filename, listener));
+    }
+    // The content is streamed into the request as it's sent, never buffered as a whole
+    public FileToken uploadFile(SzurubooruUploadBody content) throws IOException {
         ArrayList<String> parts = new ArrayList<>();
         parts.add("uploads");
 
-        try(CloseableHttpClient httpClient = HttpClients.createDefault()){
-            HttpPost uploadFile = new HttpPost(createApiUrl(parts));
-            apiHeaders.forEach(uploadFile::setHeader);
+        HttpPost uploadFile = new HttpPost(createApiUrl(parts));
+        apiHeaders.forEach(uploadFile::setHeader);
 
-            MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-            builder.addBinaryBody("content", file, ContentType.APPLICATION_OCTET_STREAM, file.getName());
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+        builder.addPart("content", content);
 
-            HttpEntity multipart = builder.build();
-            uploadFile.setEntity(multipart);
-            CloseableHttpResponse response = httpClient.execute(uploadFile);
-            String content = new String(response.getEntity().getContent().readAllBytes());
+        HttpEntity multipart = builder.build();
+        uploadFile.setEntity(multipart);
+
+        try(CloseableHttpResponse response = getHttpClient().execute(uploadFile)){
+            String responseContent = new String(response.getEntity().getContent().readAllBytes());
 
-            Gson gson = new Gson();
-            HashMap<String, String> responseMap = gson.fromJson(content, new TypeToken<HashMap<String, String>>(){}.getType());
+            Map<String, Object> responseMap = gson.fromJson(responseContent, JSON_OBJECT_TYPE);
 
-            return new FileToken(responseMap.get("token"), file.getName());
+            return new FileToken((String) responseMap.get("token"), content.getFilename());
         }
     }
 
+    // Data URLs are the ones built by createDataUrl(), a null checksum skips the verification
+    public long downloadFile(String url, Path target) throws IOException, SzurubooruHTTPException {
+        return downloadFile(url, target, null, null);
+    }
+    public long downloadFile(String url, Path target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        return new SzurubooruDownloader(this).download(url, target, expectedChecksum, listener);
+    }
+    public long downloadFile(String url, OutputStream target) throws IOException, SzurubooruHTTPException {
+        return downloadFile(url, target, null, null);
+    }
+    public long downloadFile(String url, OutputStream target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        return new SzurubooruDownloader(this).download(url, target, expectedChecksum, listener);
+    }
+    public long downloadFile(String url, WritableByteChannel target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        return new SzurubooruDownloader(this).download(url, target, expectedChecksum, listener);
+    }
+
+    // Gson instances are immutable and thread-safe, so a single one serves every call
+    public Gson getGson(){
+        return gson;
+    }
+    public SzurubooruTagDictionary getTagDictionary(){
+        return tagDictionary;
+    }
+    public boolean isInternPostTags(){
+        return internPostTags;
+    }
+    public SzurubooruRetryPolicy getRetryPolicy(){
+        return retryPolicy;
+    }
+
+    public SzurubooruCategoryCache getCategoryCache(){
+        return categoryCache;
+    }
+
+    public void addTagListener(SzurubooruTagListener listener){
+        tagListeners.add(Objects.requireNonNull(listener));
+    }
+    public void removeTagListener(SzurubooruTagListener listener){
+        tagListeners.remove(listener);
+    }
+    public void notifyTagPushed(SzurubooruTag tag){
+        tagListeners.forEach(x -> x.tagPushed(tag));
+    }
+    public void notifyTagDeleted(SzurubooruTag tag, List<String> names){
+        tagListeners.forEach(x -> x.tagDeleted(tag, names));
+    }
+    // Null when the API was built without a resource cache
+    public SzurubooruResourceCache getResourceCache(){
+        return resourceCache;
+    }
+    protected <T extends SzurubooruResource> T getCached(Class<T> type, Object id){
+        return resourceCache == null? null : resourceCache.get(type, id);
+    }
+    protected <T extends SzurubooruResource> T cached(T resource){
+        return resourceCache == null? resource : resourceCache.offer(resource);
+    }
+    protected Map<String, String> getApiHeaders(){
+        return Collections.unmodifiableMap(apiHeaders);
+    }
+
     public String createDataUrl(String relativeUrl) throws URISyntaxException, MalformedURLException {
         return createDataUrl(relativeUrl, true);
     }
@@ -282,15 +642,29 @@ public class SzurubooruAPI {
         gson.toJson(this, new FileWriter(filename));
     }
     public static SzurubooruAPI loadFromConfig(String filename) throws FileNotFoundException {
-        Gson gson = new Gson();
-
-        return gson.fromJson(new FileReader(filename), SzurubooruAPI.class);
+        SzurubooruAPI api = defaultGson.fromJson(new FileReader(filename), SzurubooruAPI.class);
+        api.gson = defaultGson;
+        api.tagDictionary = new SzurubooruTagDictionary(api);
+        api.tagListeners = new CopyOnWriteArrayList<>();
+        api.categoryCache = new SzurubooruCategoryCache(Duration.ofMinutes(5));
+
+        // Configs saved before the connection settings existed load them as 0
+        APIBuilder defaults = new APIBuilder();
+        if(api.maxConnectionsPerRoute <= 0) api.maxConnectionsPerRoute = defaults.maxConnectionsPerRoute;
+        if(api.maxConnectionsTotal <= 0) api.maxConnectionsTotal = Math.max(defaults.maxConnectionsTotal, api.maxConnectionsPerRoute);
+        if(api.connectionIdleTimeout <= 0) api.connectionIdleTimeout = defaults.connectionIdleTimeout.toMillis();
+        if(api.keepAliveDuration <= 0) api.keepAliveDuration = defaults.keepAliveDuration.toMillis();
+
+        return api;
     }
 
     public SzurubooruPost getPost(int id) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruPost cachedPost = this.getCached(SzurubooruPost.class, id);
+        if(cachedPost != null) return cachedPost;
+
         SzurubooruPost post = new SzurubooruPost(this, Map.of("id", id));
         post.pull();
-        return post;
+        return this.cached(post);
     }
     public SzurubooruPost createPost(FileToken content, PostSafety safety) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         SzurubooruPost post = new SzurubooruPost(this, new HashMap<>());
@@ -303,15 +677,68 @@ public class SzurubooruAPI {
         post.push();
         return post;
     }
+    // Tags missing on the server are created along with the post
+    public SzurubooruPost createPost(FileToken content, PostSafety safety, List<String> tags, String source) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        Map<String, Object> json = new HashMap<>();
+        json.put("tags", tags.stream().map(x -> Map.of("names", List.of(x))).toList());
+        json.put("safety", safety.toString());
+        json.put("contentToken", content.getToken());
+        if(source != null) json.put("source", source);
+
+        SzurubooruPost post = new SzurubooruPost(this, new HashMap<>());
+        post.setNewJson(json);
+
+        post.push();
+        return post;
+    }
+    public SzurubooruIngest ingest(){
+        return new SzurubooruIngest(this);
+    }
+    public SzurubooruMirror mirrorPosts(String searchQuery, Path directory){
+        return new SzurubooruMirror(this, searchQuery, directory);
+    }
     public List<SzurubooruPost> searchPost(String searchQuery) throws IOException, SzurubooruHTTPException {
         return searchPost(searchQuery, 20, false);
     }
     public List<SzurubooruPost> searchPost(String searchQuery, int pageSize, boolean eagerLoad) throws IOException, SzurubooruHTTPException {
-        try{
-            return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad);
-        } catch (InvocationTargetException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
-            return new ArrayList<>();
-        }
+        return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad);
+    }
+    public SzurubooruCompactPostList searchPostCompact(String searchQuery) throws IOException, SzurubooruHTTPException {
+        return searchPostCompact(searchQuery, 100);
+    }
+    public SzurubooruCompactPostList searchPostCompact(String searchQuery, int pageSize) throws IOException, SzurubooruHTTPException {
+        return SzurubooruSearch.searchPostCompact(this, searchQuery, pageSize);
+    }
+    public List<SzurubooruPost> searchPostParallel(String searchQuery, int pageSize, boolean eagerLoad, int parallelism, boolean ordered) throws IOException, SzurubooruHTTPException {
+        return SzurubooruSearch.searchGenericParallel(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad, parallelism, ordered);
+    }
+    public void forEachPost(String searchQuery, int pageSize, boolean eagerLoad, Consumer<SzurubooruPost> consumer) throws IOException, SzurubooruHTTPException {
+        SzurubooruSearch.forEachGeneric(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad, consumer);
+    }
+    public Stream<SzurubooruPost> streamPost(String searchQuery){
+        return streamPost(searchQuery, 20, false);
+    }
+    public Stream<SzurubooruPost> streamPost(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.stream(this.iteratePost(searchQuery, pageSize, eagerLoad).iterator());
+    }
+    // Close the stream, e.g. with try-with-resources, when it may not be consumed to the end
+    public Stream<SzurubooruPost> streamPost(String searchQuery, int pageSize, boolean eagerLoad, int prefetchPages){
+        return SzurubooruSearch.streamGenericPrefetching(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad, prefetchPages);
+    }
+    public Stream<SzurubooruPost> streamPostKeyset(String searchQuery){
+        return streamPostKeyset(searchQuery, 100, false, false, null);
+    }
+    public Stream<SzurubooruPost> streamPostKeyset(String searchQuery, int pageSize, boolean eagerLoad, boolean ascending, Integer startAfterId){
+        return SzurubooruSearch.stream(this.iteratePostKeyset(searchQuery, pageSize, eagerLoad, ascending, startAfterId).iterator());
+    }
+    public Iterable<SzurubooruPost> iteratePostKeyset(String searchQuery, int pageSize, boolean eagerLoad, boolean ascending, Integer startAfterId){
+        return () -> SzurubooruSearch.iterateGenericKeyset(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad, ascending, startAfterId);
+    }
+    public Iterable<SzurubooruPost> iteratePost(String searchQuery){
+        return iteratePost(searchQuery, 20, false);
+    }
+    public Iterable<SzurubooruPost> iteratePost(String searchQuery, int pageSize, boolean eagerLoad){
+        return () -> SzurubooruSearch.iterateGeneric(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad);
     }
     public void deletePost(int id) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         try{
@@ -326,6 +753,12 @@ public class SzurubooruAPI {
     public List<SzurubooruPost> getAroundPost(int id) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         return this.getPost(id).getAround();
     }
+    public SzurubooruPostCursor navigatePosts(int startId){
+        return navigatePosts(startId, 3, 32);
+    }
+    public SzurubooruPostCursor navigatePosts(int startId, int prefetchWindow, int cacheSize){
+        return new SzurubooruPostCursor(this, startId, prefetchWindow, cacheSize);
+    }
     public SzurubooruPost mergePosts(int source, int target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         return mergePosts(source, target, false);
     }
@@ -347,9 +780,12 @@ public class SzurubooruAPI {
     }
 
     public SzurubooruTag getTag(String id) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruTag cachedTag = this.getCached(SzurubooruTag.class, id);
+        if(cachedTag != null) return cachedTag;
+
         SzurubooruTag tag = new SzurubooruTag(this, Map.of("names", List.of(id)));
         tag.pull();
-        return tag;
+        return this.cached(tag);
     }
     public SzurubooruTag createTag(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         SzurubooruTagCategory defaultCategory = this.getDefaultTagCategory();
@@ -360,15 +796,117 @@ public class SzurubooruAPI {
         tag.push();
         return tag;
     }
+    // Scans every tag once, the graph then stays up to date with the tags pushed or deleted through this API
+    public SzurubooruTagGraph loadTagGraph() throws IOException, SzurubooruHTTPException {
+        SzurubooruTagGraph graph = new SzurubooruTagGraph(this);
+        graph.load(null, 100);
+        this.addTagListener(graph);
+
+        return graph;
+    }
+    // Same as the tag graph, kept up to date with the tags pushed or deleted through this API. Edits made elsewhere
+    // are picked up by SzurubooruTagAutocomplete.refresh()
+    public SzurubooruTagAutocomplete loadTagAutocomplete() throws IOException, SzurubooruHTTPException {
+        SzurubooruTagAutocomplete autocomplete = new SzurubooruTagAutocomplete(this);
+        autocomplete.load(100);
+        this.addTagListener(autocomplete);
+
+        return autocomplete;
+    }
+    public SzurubooruTagResolution resolveTags(Collection<String> names) throws IOException, SzurubooruHTTPException {
+        return resolveTags(names, false);
+    }
+    public SzurubooruTagResolution resolveTags(Collection<String> names, boolean createMissing) throws IOException, SzurubooruHTTPException {
+        // Tag names are case-insensitive on the server
+        Map<String, String> pending = new LinkedHashMap<>();
+        Map<String, SzurubooruTag> found = new LinkedHashMap<>();
+
+        for(String name:names){
+            if(name == null || name.isBlank() || found.containsKey(name)) continue;
+
+            SzurubooruTag cachedTag = this.getCached(SzurubooruTag.class, name);
+            if(cachedTag != null) found.put(name, cachedTag);
+            else pending.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+        }
+
+        // A single name:a,b,c query matches any of the listed names, aliases included
+        List<String> chunk = new ArrayList<>();
+        int chunkLength = 0;
+        Map<String, SzurubooruTag> tagsByName = new HashMap<>();
+
+        for(Iterator<String> iterator = pending.values().iterator(); iterator.hasNext();){
+            String escaped = SzurubooruSearch.escapeQueryValue(iterator.next());
+            chunk.add(escaped);
+            chunkLength += escaped.length() + 1;
+
+            if(chunk.size() >= RESOLVE_TAGS_CHUNK_SIZE || chunkLength >= RESOLVE_TAGS_QUERY_LENGTH || !iterator.hasNext()){
+                // Loaded in full, the tags end up in the resource cache and must be pushable from there
+                for(SzurubooruTag tag:this.searchTag("name:" + String.join(",", chunk), RESOLVE_TAGS_CHUNK_SIZE, true)){
+                    SzurubooruTag canonical = this.cached(tag);
+                    canonical.getNames().forEach(x -> tagsByName.put(x.toLowerCase(Locale.ROOT), canonical));
+                }
+
+                chunk.clear();
+                chunkLength = 0;
+            }
+        }
+
+        Set<String> missing = new LinkedHashSet<>();
+        for(String name:names){
+            if(name == null || name.isBlank() || found.containsKey(name)) continue;
+
+            SzurubooruTag tag = tagsByName.get(name.toLowerCase(Locale.ROOT));
+            if(tag != null) found.put(name, tag);
+            else missing.add(name);
+        }
+
+        Map<String, SzurubooruTag> created = new LinkedHashMap<>();
+        Map<String, Throwable> failed = new LinkedHashMap<>();
+        if(createMissing && !missing.isEmpty()){
+            // The default category is looked up once and all the creations are sent concurrently
+            String defaultCategory = this.getDefaultTagCategory().getName();
+            Map<String, CompletableFuture<SzurubooruTag>> creations = new HashMap<>();
+
+            missing.forEach(name -> creations.computeIfAbsent(name.toLowerCase(Locale.ROOT),
+                    x -> this.getAsyncApi().createTagAsync(name, defaultCategory)));
+            for(String name:missing){
+                try{
+                    created.put(name, this.cached(creations.get(name.toLowerCase(Locale.ROOT)).join()));
+                } catch (CompletionException e) {
+                    failed.put(name, SzurubooruAsyncAPI.unwrap(e));
+                }
+            }
+        }
+
+        return new SzurubooruTagResolution(found, missing, created, failed);
+    }
     public List<SzurubooruTag> searchTag(String searchQuery) throws IOException, SzurubooruHTTPException {
         return searchTag(searchQuery, 20, false);
     }
     public List<SzurubooruTag> searchTag(String searchQuery, int pageSize, boolean eagerLoad) throws IOException, SzurubooruHTTPException {
-        try{
-            return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad);
-        } catch (InvocationTargetException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
-            return new ArrayList<>();
-        }
+        return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad);
+    }
+    public List<SzurubooruTag> searchTagParallel(String searchQuery, int pageSize, boolean eagerLoad, int parallelism, boolean ordered) throws IOException, SzurubooruHTTPException {
+        return SzurubooruSearch.searchGenericParallel(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad, parallelism, ordered);
+    }
+    public void forEachTag(String searchQuery, int pageSize, boolean eagerLoad, Consumer<SzurubooruTag> consumer) throws IOException, SzurubooruHTTPException {
+        SzurubooruSearch.forEachGeneric(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad, consumer);
+    }
+    public Stream<SzurubooruTag> streamTag(String searchQuery){
+        return streamTag(searchQuery, 20, false);
+    }
+    public Stream<SzurubooruTag> streamTag(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.stream(this.iterateTag(searchQuery, pageSize, eagerLoad).iterator());
+    }
+    // Close the stream, e.g. with try-with-resources, when it may not be consumed to the end
+    public Stream<SzurubooruTag> streamTag(String searchQuery, int pageSize, boolean eagerLoad, int prefetchPages){
+        return SzurubooruSearch.streamGenericPrefetching(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad, prefetchPages);
+    }
+    public Iterable<SzurubooruTag> iterateTag(String searchQuery){
+        return iterateTag(searchQuery, 20, false);
+    }
+    public Iterable<SzurubooruTag> iterateTag(String searchQuery, int pageSize, boolean eagerLoad){
+        return () -> SzurubooruSearch.iterateGeneric(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad);
     }
     public void deleteTag(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         try{
@@ -397,6 +935,9 @@ public class SzurubooruAPI {
     }
 
     public SzurubooruTagCategory getTagCategory(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruTagCategory cached = categoryCache.get(SzurubooruTagCategory.class, name);
+        if(cached != null) return cached;
+
         SzurubooruTagCategory tagCategory = new SzurubooruTagCategory(this, Map.of("name", name));
         tagCategory.pull();
         return tagCategory;
@@ -416,11 +957,12 @@ public class SzurubooruAPI {
         return tagCategory;
     }
     public List<SzurubooruTagCategory> listTagCategories() throws IOException, SzurubooruHTTPException {
-        try{
-            return SzurubooruSearch.searchUnpaged(this, SzurubooruTagCategory.class);
-        } catch (InvocationTargetException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
-            return new ArrayList<>();
-        }
+        List<SzurubooruTagCategory> cached = categoryCache.get(SzurubooruTagCategory.class);
+        if(cached != null) return cached;
+
+        List<SzurubooruTagCategory> categories = SzurubooruSearch.searchUnpaged(this, SzurubooruTagCategory.class);
+        categoryCache.put(SzurubooruTagCategory.class, categories);
+        return categories;
     }
     public void setDefaultTagCategory(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         this.getTagCategory(name)
@@ -438,6 +980,9 @@ public class SzurubooruAPI {
     }
 
     public SzurubooruPoolCategory getPoolCategory(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruPoolCategory cached = categoryCache.get(SzurubooruPoolCategory.class, name);
+        if(cached != null) return cached;
+
         SzurubooruPoolCategory poolCategory = new SzurubooruPoolCategory(this, Map.of("name", name));
         poolCategory.pull();
         return poolCategory;
@@ -457,11 +1002,12 @@ public class SzurubooruAPI {
         return poolCategory;
     }
     public List<SzurubooruPoolCategory> listPoolCategories() throws IOException, SzurubooruHTTPException {
-        try{
-            return SzurubooruSearch.searchUnpaged(this, SzurubooruPoolCategory.class);
-        } catch (InvocationTargetException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
-            return new ArrayList<>();
-        }
+        List<SzurubooruPoolCategory> cached = categoryCache.get(SzurubooruPoolCategory.class);
+        if(cached != null) return cached;
+
+        List<SzurubooruPoolCategory> categories = SzurubooruSearch.searchUnpaged(this, SzurubooruPoolCategory.class);
+        categoryCache.put(SzurubooruPoolCategory.class, categories);
+        return categories;
     }
     public void setDefaultPoolCategory(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         this.getPoolCategory(name)
@@ -479,10 +1025,13 @@ public class SzurubooruAPI {
     }
 
     public SzurubooruPool getPool(int id) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruPool cachedPool = this.getCached(SzurubooruPool.class, id);
+        if(cachedPool != null) return cachedPool;
+
         SzurubooruPool pool = new SzurubooruPool(this, Map.of("id", id));
         pool.pull();
 
-        return pool;
+        return this.cached(pool);
     }
     public SzurubooruPool createPool(String name) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         SzurubooruPool pool = new SzurubooruPool(this, new HashMap<>());
@@ -498,11 +1047,38 @@ public class SzurubooruAPI {
         return searchPool(searchQuery, 20, false);
     }
     public List<SzurubooruPool> searchPool(String searchQuery, int pageSize, boolean eagerLoad) throws IOException, SzurubooruHTTPException {
-        try{
-            return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad);
-        } catch (InvocationTargetException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+        return SzurubooruSearch.searchGeneric(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad);
+    }
+    public List<SzurubooruPool> searchPoolParallel(String searchQuery, int pageSize, boolean eagerLoad, int parallelism, boolean ordered) throws IOException, SzurubooruHTTPException {
+        return SzurubooruSearch.searchGenericParallel(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad, parallelism, ordered);
+    }
+    public void forEachPool(String searchQuery, int pageSize, boolean eagerLoad, Consumer<SzurubooruPool> consumer) throws IOException, SzurubooruHTTPException {
+        SzurubooruSearch.forEachGeneric(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad, consumer);
+    }
+    public Stream<SzurubooruPool> streamPool(String searchQuery){
+        return streamPool(searchQuery, 20, false);
+    }
+    public Stream<SzurubooruPool> streamPool(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.stream(this.iteratePool(searchQuery, pageSize, eagerLoad).iterator());
+    }
+    // Close the stream, e.g. with try-with-resources, when it may not be consumed to the end
+    public Stream<SzurubooruPool> streamPool(String searchQuery, int pageSize, boolean eagerLoad, int prefetchPages){
+        return SzurubooruSearch.streamGenericPrefetching(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad, prefetchPages);
+    }
+    public Stream<SzurubooruPool> streamPoolKeyset(String searchQuery){
+        return streamPoolKeyset(searchQuery, 100, false, false, null);
+    }
+    public Stream<SzurubooruPool> streamPoolKeyset(String searchQuery, int pageSize, boolean eagerLoad, boolean ascending, Integer startAfterId){
+        return SzurubooruSearch.stream(this.iteratePoolKeyset(searchQuery, pageSize, eagerLoad, ascending, startAfterId).iterator());
+    }
+    public Iterable<SzurubooruPool> iteratePoolKeyset(String searchQuery, int pageSize, boolean eagerLoad, boolean ascending, Integer startAfterId){
+        return () -> SzurubooruSearch.iterateGenericKeyset(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad, ascending, startAfterId);
+    }
+    public Iterable<SzurubooruPool> iteratePool(String searchQuery){
+        return iteratePool(searchQuery, 20, false);
+    }
+    public Iterable<SzurubooruPool> iteratePool(String searchQuery, int pageSize, boolean eagerLoad){
+        return () -> SzurubooruSearch.iterateGeneric(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad);
     }
     public SzurubooruPool mergePools(int source, int target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         return mergePools(source, target, false);
@@ -520,30 +1096,27 @@ public class SzurubooruAPI {
         return searchByImage(image, false);
     }
     public List<SzurubooruSearchResult> searchByImage(FileToken image, boolean eagerLoad) throws IOException, SzurubooruHTTPException {
-        Map<String, String> urlQuery;
-
-        try {
-            urlQuery = Map.of("fields", String.join(",", SzurubooruPost.class
-                    .getDeclaredConstructor()
-                    .newInstance()
-                    .lazyLoadComponents()));
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            urlQuery = null;
-        }
-
         Map<String, Object> result = this.call("POST",
                 List.of("posts", "reverse-search"),
-                eagerLoad? null : urlQuery,
+                createImageSearchQuery(eagerLoad),
                 Map.of("contentToken", image.getToken()));
 
+        return parseImageSearchResults(result);
+    }
+    protected Map<String, String> createImageSearchQuery(boolean eagerLoad){
+        if(eagerLoad) return null;
+
+        return Map.of("fields", String.join(",", new SzurubooruPost(this, new HashMap<>()).lazyLoadComponents()));
+    }
+    protected List<SzurubooruSearchResult> parseImageSearchResults(Map<String, Object> result){
         List<?> similarPosts = (List<?>) result.get("similarPosts");
         List<SzurubooruSearchResult> ret = new ArrayList<>(similarPosts.stream()
-                .filter(x -> ((Double)((Map<String, Object>)x).get("distance")) != 0.0d)
+                .filter(x -> ((Number)((Map<String, Object>)x).get("distance")).doubleValue() != 0.0d)
                 .map(x -> {
                     Map<String, Object> searchResult = (Map<String, Object>) x;
                     return new SzurubooruSearchResult(
                         new SzurubooruPost(this, (Map<String, Object>) searchResult.get("post")),
-                        (Double)searchResult.get("distance"),
+                        ((Number)searchResult.get("distance")).doubleValue(),
                         false);
                 })
                 .toList());
@@ -0,0 +1,386 @@
+package jszuru;
+
+import com.google.gson.JsonParseException;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
+import jszuru.resources.*;
+import jszuru.search.SzurubooruSearch;
+import jszuru.search.SzurubooruSearchResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("unused")
+public class SzurubooruAsyncAPI implements Closeable {
+    private final SzurubooruAPI api;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    protected SzurubooruAsyncAPI(SzurubooruAPI api){
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.api = api;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "jszuru-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+
+    public static Throwable unwrap(Throwable throwable){
+        while(throwable instanceof CompletionException && throwable.getCause() != null){
+            throwable = throwable.getCause();
+        }
+
+        return throwable;
+    }
+    // Waits for the future, rethrowing the failure the same way the blocking API would
+    public static <T> T await(CompletableFuture<T> future) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        try{
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+
+            if(cause instanceof IOException ioException) throw ioException;
+            if(cause instanceof SzurubooruHTTPException httpException) throw httpException;
+            if(cause instanceof SzurubooruResourceNotSynchronizedException notSynchronized) throw notSynchronized;
+            throw e;
+        }
+    }
+    protected static <T> CompletableFuture<T> ignoreNotFound(CompletableFuture<T> future, String errorName){
+        return future.exceptionally(e -> {
+            Throwable cause = unwrap(e);
+            if(cause instanceof SzurubooruHTTPException httpException && errorName.equals(httpException.getErrorName())){
+                return null;
+            }
+
+            throw new CompletionException(cause);
+        });
+    }
+
+    public CompletableFuture<Map<String, Object>> callAsync(String method, List<String> urlParts){
+        return callAsync(method, urlParts, null, null);
+    }
+    public CompletableFuture<Map<String, Object>> callAsync(String method,
+                                                            List<String> urlParts,
+                                                            Map<String, String> urlQuery,
+                                                            Map<String, Object> body){
+        HttpRequest.BodyPublisher bodyPublisher = body == null?
+                HttpRequest.BodyPublishers.noBody() :
+                HttpRequest.BodyPublishers.ofString(api.getGson().toJson(body), StandardCharsets.UTF_8);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(api.createApiUrl(urlParts, urlQuery)))
+                .method(method.toUpperCase(), bodyPublisher);
+        api.getApiHeaders().forEach(request::setHeader);
+        if(body != null) request.setHeader("Content-Type", "application/json");
+
+        return send(request.build());
+    }
+    protected CompletableFuture<Map<String, Object>> send(HttpRequest request){
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(response -> {
+                    try{
+                        SzurubooruAPI.checkApiResponse(response.statusCode(), response.body());
+                        return api.getGson().<Map<String, Object>>fromJson(response.body(), SzurubooruAPI.JSON_OBJECT_TYPE);
+                    } catch (SzurubooruHTTPException e) {
+                        throw new CompletionException(e);
+                    } catch (JsonParseException e) {
+                        throw new CompletionException(new SzurubooruHTTPException(response.body()));
+                    }
+                });
+    }
+
+    public CompletableFuture<FileToken> uploadFileAsync(String file){
+        return uploadFileAsync(Path.of(file));
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(File file){
+        return uploadFileAsync(file.toPath());
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(Path file){
+        return uploadFileAsync(file, null);
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(Path file, SzurubooruUploadListener listener){
+        try{
+            return uploadFileAsync(SzurubooruUploadBody.of(file, listener));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(InputStream content, String filename, long contentLength, SzurubooruUploadListener listener){
+        try{
+            return uploadFileAsync(SzurubooruUploadBody.of(content, filename, contentLength, listener));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(ByteBuffer content, String filename, SzurubooruUploadListener listener){
+        return uploadFileAsync(SzurubooruUploadBody.of(content, filename, listener));
+    }
+    public CompletableFuture<FileToken> uploadFileAsync(SzurubooruUploadBody content){
+        String boundary = "jszuru-" + UUID.randomUUID();
+        String header = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"content\"; filename=\"" + content.getFilename().replace("\"", "%22") + "\"\r\n" +
+                "Content-Type: " + content.getMimeType() + "\r\n\r\n";
+        String footer = "\r\n--" + boundary + "--\r\n";
+
+        HttpRequest.BodyPublisher contentBody;
+        try{
+            contentBody = content.toBodyPublisher();
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // The content is streamed between the two multipart delimiters
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(api.createApiUrl(List.of("uploads"))))
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(header, StandardCharsets.UTF_8),
+                        contentBody,
+                        HttpRequest.BodyPublishers.ofString(footer, StandardCharsets.UTF_8)));
+        api.getApiHeaders().forEach(request::setHeader);
+        request.setHeader("Content-Type", "multipart/form-data; boundary=" + boundary);
+
+        return send(request.build())
+                .thenApply(data -> new FileToken((String) data.get("token"), content.getFilename()));
+    }
+
+    public CompletableFuture<SzurubooruPost> getPostAsync(int id){
+        SzurubooruPost cachedPost = api.getCached(SzurubooruPost.class, id);
+        if(cachedPost != null) return CompletableFuture.completedFuture(cachedPost);
+
+        SzurubooruPost post = new SzurubooruPost(api, Map.of("id", id));
+        return post.pullAsync().thenApply(x -> api.cached(post));
+    }
+    public CompletableFuture<SzurubooruPost> createPostAsync(FileToken content, PostSafety safety){
+        SzurubooruPost post = new SzurubooruPost(api, new HashMap<>());
+        post.setNewJson(Map.of(
+                "tags", new ArrayList<>(),
+                "safety", safety.toString(),
+                "contentToken", content.getToken()
+        ));
+
+        return post.pushAsync().thenApply(x -> post);
+    }
+    public CompletableFuture<List<SzurubooruPost>> searchPostAsync(String searchQuery){
+        return searchPostAsync(searchQuery, 20, false);
+    }
+    public CompletableFuture<List<SzurubooruPost>> searchPostAsync(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.searchGenericAsync(this, searchQuery, SzurubooruPost.class, pageSize, eagerLoad);
+    }
+    public CompletableFuture<Void> deletePostAsync(int id){
+        return ignoreNotFound(getPostAsync(id).thenCompose(SzurubooruResource::deleteAsync), "PostNotFoundError");
+    }
+    public CompletableFuture<List<SzurubooruPost>> getAroundPostAsync(int id){
+        return getPostAsync(id).thenCompose(SzurubooruPost::getAroundAsync);
+    }
+    public CompletableFuture<SzurubooruPost> mergePostsAsync(int source, int target){
+        return mergePostsAsync(source, target, false);
+    }
+    public CompletableFuture<SzurubooruPost> mergePostsAsync(int source, int target, boolean replaceContent){
+        CompletableFuture<SzurubooruPost> sourcePost = getPostAsync(source);
+        CompletableFuture<SzurubooruPost> targetPost = getPostAsync(target);
+
+        return sourcePost.thenCombine(targetPost, (x, y) -> y.mergeFromAsync(x, replaceContent).thenApply(z -> y))
+                .thenCompose(x -> x);
+    }
+    public CompletableFuture<SzurubooruPost> getFeaturedPostAsync(){
+        return callAsync("GET", List.of("featured-post"))
+                .thenApply(data -> new SzurubooruPost(api, data));
+    }
+    public CompletableFuture<Void> setFeaturedPostAsync(int id){
+        return callAsync("POST", List.of("featured-post"), null, Map.of("id", id))
+                .thenAccept(x -> {});
+    }
+
+    public CompletableFuture<SzurubooruTag> getTagAsync(String id){
+        SzurubooruTag cachedTag = api.getCached(SzurubooruTag.class, id);
+        if(cachedTag != null) return CompletableFuture.completedFuture(cachedTag);
+
+        SzurubooruTag tag = new SzurubooruTag(api, Map.of("names", List.of(id)));
+        return tag.pullAsync().thenApply(x -> api.cached(tag));
+    }
+    public CompletableFuture<SzurubooruTag> createTagAsync(String name){
+        return getDefaultTagCategoryAsync().thenCompose(defaultCategory -> createTagAsync(name, defaultCategory.getName()));
+    }
+    public CompletableFuture<SzurubooruTag> createTagAsync(String name, String category){
+        SzurubooruTag tag = new SzurubooruTag(api, new HashMap<>());
+        tag.setNewJson(Map.of("names", List.of(name), "category", category));
+
+        return tag.pushAsync().thenApply(x -> tag);
+    }
+    public CompletableFuture<List<SzurubooruTag>> searchTagAsync(String searchQuery){
+        return searchTagAsync(searchQuery, 20, false);
+    }
+    public CompletableFuture<List<SzurubooruTag>> searchTagAsync(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.searchGenericAsync(this, searchQuery, SzurubooruTag.class, pageSize, eagerLoad);
+    }
+    public CompletableFuture<Void> deleteTagAsync(String name){
+        return ignoreNotFound(getTagAsync(name).thenCompose(SzurubooruResource::deleteAsync), "TagNotFoundError");
+    }
+    public CompletableFuture<SzurubooruTag> mergeTagsAsync(String source, String target){
+        return mergeTagsAsync(source, target, false);
+    }
+    public CompletableFuture<SzurubooruTag> mergeTagsAsync(String source, String target, boolean addAsAlias){
+        CompletableFuture<SzurubooruTag> sourceTag = getTagAsync(source);
+        CompletableFuture<SzurubooruTag> targetTag = getTagAsync(target);
+
+        return sourceTag.thenCombine(targetTag, (x, y) -> y.mergeFromAsync(x, addAsAlias).thenApply(z -> y))
+                .thenCompose(x -> x);
+    }
+    public CompletableFuture<List<SzurubooruTag>> listTagSiblingsAsync(String name){
+        return getTagAsync(name).thenCompose(SzurubooruTag::getSiblingsAsync);
+    }
+
+    public CompletableFuture<SzurubooruTagCategory> getTagCategoryAsync(String name){
+        SzurubooruTagCategory cached = api.getCategoryCache().get(SzurubooruTagCategory.class, name);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        SzurubooruTagCategory tagCategory = new SzurubooruTagCategory(api, Map.of("name", name));
+        return tagCategory.pullAsync().thenApply(x -> tagCategory);
+    }
+    public CompletableFuture<SzurubooruTagCategory> getDefaultTagCategoryAsync(){
+        return listTagCategoriesAsync().thenApply(categories -> categories
+                .stream()
+                .filter(x -> x.isDefault())
+                .findFirst()
+                .orElse(new SzurubooruTagCategory(api, Map.of("name", "default"))));
+    }
+    public CompletableFuture<SzurubooruTagCategory> createTagCategoryAsync(String name){
+        SzurubooruTagCategory tagCategory = new SzurubooruTagCategory(api, new HashMap<>());
+        tagCategory.setNewJson(Map.of("name", name, "color", "default", "order", 1));
+
+        return tagCategory.pushAsync().thenApply(x -> tagCategory);
+    }
+    public CompletableFuture<List<SzurubooruTagCategory>> listTagCategoriesAsync(){
+        List<SzurubooruTagCategory> cached = api.getCategoryCache().get(SzurubooruTagCategory.class);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        return SzurubooruSearch.searchUnpagedAsync(this, SzurubooruTagCategory.class)
+                .thenApply(categories -> {
+                    api.getCategoryCache().put(SzurubooruTagCategory.class, categories);
+                    return categories;
+                });
+    }
+    public CompletableFuture<Void> setDefaultTagCategoryAsync(String name){
+        return getTagCategoryAsync(name)
+                .thenCompose(SzurubooruCategoryResource::setDefaultAsync)
+                .thenAccept(x -> {});
+    }
+    public CompletableFuture<Void> deleteTagCategoryAsync(String name){
+        return ignoreNotFound(getTagCategoryAsync(name).thenCompose(SzurubooruResource::deleteAsync), "TagCategoryNotFoundError");
+    }
+
+    public CompletableFuture<SzurubooruPoolCategory> getPoolCategoryAsync(String name){
+        SzurubooruPoolCategory cached = api.getCategoryCache().get(SzurubooruPoolCategory.class, name);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        SzurubooruPoolCategory poolCategory = new SzurubooruPoolCategory(api, Map.of("name", name));
+        return poolCategory.pullAsync().thenApply(x -> poolCategory);
+    }
+    public CompletableFuture<SzurubooruPoolCategory> getDefaultPoolCategoryAsync(){
+        return listPoolCategoriesAsync().thenApply(categories -> categories
+                .stream()
+                .filter(x -> x.isDefault())
+                .findFirst()
+                .orElse(new SzurubooruPoolCategory(api, Map.of("name", "default"))));
+    }
+    public CompletableFuture<SzurubooruPoolCategory> createPoolCategoryAsync(String name){
+        SzurubooruPoolCategory poolCategory = new SzurubooruPoolCategory(api, new HashMap<>());
+        poolCategory.setNewJson(Map.of("name", name, "color", "default"));
+
+        return poolCategory.pushAsync().thenApply(x -> poolCategory);
+    }
+    public CompletableFuture<List<SzurubooruPoolCategory>> listPoolCategoriesAsync(){
+        List<SzurubooruPoolCategory> cached = api.getCategoryCache().get(SzurubooruPoolCategory.class);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+
+        return SzurubooruSearch.searchUnpagedAsync(this, SzurubooruPoolCategory.class)
+                .thenApply(categories -> {
+                    api.getCategoryCache().put(SzurubooruPoolCategory.class, categories);
+                    return categories;
+                });
+    }
+    public CompletableFuture<Void> setDefaultPoolCategoryAsync(String name){
+        return getPoolCategoryAsync(name)
+                .thenCompose(SzurubooruCategoryResource::setDefaultAsync)
+                .thenAccept(x -> {});
+    }
+    public CompletableFuture<Void> deletePoolCategoryAsync(String name){
+        return ignoreNotFound(getPoolCategoryAsync(name).thenCompose(SzurubooruResource::deleteAsync), "PoolCategoryNotFoundError");
+    }
+
+    public CompletableFuture<SzurubooruPool> getPoolAsync(int id){
+        SzurubooruPool cachedPool = api.getCached(SzurubooruPool.class, id);
+        if(cachedPool != null) return CompletableFuture.completedFuture(cachedPool);
+
+        SzurubooruPool pool = new SzurubooruPool(api, Map.of("id", id));
+        return pool.pullAsync().thenApply(x -> api.cached(pool));
+    }
+    public CompletableFuture<SzurubooruPool> createPoolAsync(String name){
+        return getDefaultPoolCategoryAsync().thenCompose(defaultCategory -> {
+            SzurubooruPool pool = new SzurubooruPool(api, new HashMap<>());
+            pool.setNewJson(Map.of(
+                    "names", List.of(name),
+                    "category", defaultCategory.getName()
+            ));
+
+            return pool.pushAsync().thenApply(x -> pool);
+        });
+    }
+    public CompletableFuture<List<SzurubooruPool>> searchPoolAsync(String searchQuery){
+        return searchPoolAsync(searchQuery, 20, false);
+    }
+    public CompletableFuture<List<SzurubooruPool>> searchPoolAsync(String searchQuery, int pageSize, boolean eagerLoad){
+        return SzurubooruSearch.searchGenericAsync(this, searchQuery, SzurubooruPool.class, pageSize, eagerLoad);
+    }
+    public CompletableFuture<SzurubooruPool> mergePoolsAsync(int source, int target){
+        return mergePoolsAsync(source, target, false);
+    }
+    public CompletableFuture<SzurubooruPool> mergePoolsAsync(int source, int target, boolean addAsAlias){
+        CompletableFuture<SzurubooruPool> sourcePool = getPoolAsync(source);
+        CompletableFuture<SzurubooruPool> targetPool = getPoolAsync(target);
+
+        return sourcePool.thenCombine(targetPool, (x, y) -> y.mergeFromAsync(x, addAsAlias).thenApply(z -> y))
+                .thenCompose(x -> x);
+    }
+
+    public CompletableFuture<List<SzurubooruSearchResult>> searchByImageAsync(FileToken image){
+        return searchByImageAsync(image, false);
+    }
+    public CompletableFuture<List<SzurubooruSearchResult>> searchByImageAsync(FileToken image, boolean eagerLoad){
+        return callAsync("POST",
+                    List.of("posts", "reverse-search"),
+                    api.createImageSearchQuery(eagerLoad),
+                    Map.of("contentToken", image.getToken()))
+                .thenApply(api::parseImageSearchResults);
+    }
+
+    @Override
+    public void close(){
+        executor.shutdownNow();
+    }
+
+    public String toString(){
+        return "Asynchronous " + api;
+    }
+}
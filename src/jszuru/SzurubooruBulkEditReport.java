@@ -0,0 +1,58 @@
+package jszuru;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("unused")
+public class SzurubooruBulkEditReport {
+    protected final AtomicInteger scanned = new AtomicInteger();
+    protected final AtomicInteger skipped = new AtomicInteger();
+    protected final AtomicInteger edited = new AtomicInteger();
+    protected final Map<Integer, Throwable> failed = new LinkedHashMap<>();
+    protected volatile Integer lastProcessedId = null;
+    protected long elapsedNanos = 0;
+
+    protected synchronized void addFailure(int id, Throwable exception){
+        failed.put(id, exception);
+    }
+
+    public int getScanned() {
+        return scanned.get();
+    }
+    // Posts that already had every added tag and none of the removed ones
+    public int getSkipped() {
+        return skipped.get();
+    }
+    public int getEdited() {
+        return edited.get();
+    }
+    // Post ids mapped to why their push failed, conflicts included once the retry policy gave up
+    public synchronized Map<Integer, Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+    public synchronized boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+    // Every post up to this id, in scan order, has been processed. It stops before the first failed post, so
+    // resuming from it retries the failures. Null when nothing was
+    public Integer getLastProcessedId() {
+        return lastProcessedId;
+    }
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    public double getPostsPerSecond() {
+        return elapsedNanos == 0? 0 : scanned.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+    public double getEditsPerSecond() {
+        return elapsedNanos == 0? 0 : edited.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "Scanned %d posts in %d ms (%.1f/s): %d edited, %d skipped, %d failed, last processed id %s",
+                scanned.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getPostsPerSecond(),
+                edited.get(), skipped.get(), failed.size(), lastProcessedId);
+    }
+}
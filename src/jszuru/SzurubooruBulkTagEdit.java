@@ -0,0 +1,248 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruPost;
+import jszuru.search.SzurubooruSearch;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+// Adds and removes tags on every post matching a query. Posts are scanned by id with only the fields needed
+// to compute the edit, posts already in the wanted state are skipped and the rest is pushed concurrently
+@SuppressWarnings("unused")
+public class SzurubooruBulkTagEdit {
+    protected static final List<String> FIELDS = List.of("id", "version", "tags");
+
+    private final SzurubooruAPI api;
+    private final String searchQuery;
+    private final Set<String> added = new LinkedHashSet<>();
+    private final Set<String> removed = new HashSet<>();
+
+    private int pageSize = 100;
+    private int maxConcurrency = 4;
+    private double maxRequestsPerSecond = 0;
+    private Integer startAfterId = null;
+    private IntConsumer checkpointListener = null;
+
+    // Ids in scan order whose outcome isn't known yet, mapped to whether they're done
+    private final LinkedHashMap<Integer, Boolean> inFlight = new LinkedHashMap<>();
+    // Once a post failed the checkpoint stays before it, so resuming retries it
+    private boolean checkpointBlocked = false;
+    private long nextRequestNanos = 0;
+
+    public SzurubooruBulkTagEdit(SzurubooruAPI api, String searchQuery){
+        this.api = api;
+        this.searchQuery = searchQuery;
+    }
+
+    public SzurubooruBulkTagEdit addTags(String... names){
+        for(String name:names) added.add(name);
+        return this;
+    }
+    public SzurubooruBulkTagEdit removeTags(String... names){
+        for(String name:names) removed.add(name.toLowerCase(Locale.ROOT));
+        return this;
+    }
+    public SzurubooruBulkTagEdit setPageSize(int pageSize) {
+        if(pageSize <= 0) throw new IllegalArgumentException("Page size must be positive");
+
+        this.pageSize = pageSize;
+        return this;
+    }
+    public SzurubooruBulkTagEdit setMaxConcurrency(int maxConcurrency) {
+        if(maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive");
+
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+    // 0 disables the limit
+    public SzurubooruBulkTagEdit setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        if(maxRequestsPerSecond < 0) throw new IllegalArgumentException("Rate limit can't be negative");
+
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+    // Resumes a previous run from its last checkpoint
+    public SzurubooruBulkTagEdit startAfter(Integer lastProcessedId) {
+        this.startAfterId = lastProcessedId;
+        return this;
+    }
+    // Called with the id up to which every post has been processed, in scan order, whenever it advances
+    public SzurubooruBulkTagEdit setCheckpointListener(IntConsumer checkpointListener) {
+        this.checkpointListener = checkpointListener;
+        return this;
+    }
+
+    // The new tag list, or null when the post already has every added tag and none of the removed ones
+    protected List<Map<String, Object>> editTags(List<Map<String, Object>> tags){
+        List<Map<String, Object>> edited = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        boolean changed = false;
+
+        for(Map<String, Object> tag:tags){
+            List<String> names = (List<String>) tag.get("names");
+            if(names.stream().anyMatch(x -> removed.contains(x.toLowerCase(Locale.ROOT)))){
+                changed = true;
+                continue;
+            }
+
+            names.forEach(x -> present.add(x.toLowerCase(Locale.ROOT)));
+            edited.add(tag);
+        }
+        for(String name:added){
+            if(present.contains(name.toLowerCase(Locale.ROOT))) continue;
+
+            edited.add(Map.of("names", List.of(name)));
+            present.add(name.toLowerCase(Locale.ROOT));
+            changed = true;
+        }
+
+        return changed? edited : null;
+    }
+
+    protected synchronized void begin(int id){
+        if(!checkpointBlocked) inFlight.put(id, false);
+    }
+    // The failed post and everything scanned after it leave the checkpoint, only posts before it can still move it
+    protected synchronized void fail(int id){
+        checkpointBlocked = true;
+
+        Iterator<Integer> iterator = inFlight.keySet().iterator();
+        boolean after = false;
+        while(iterator.hasNext()){
+            if(iterator.next() == id) after = true;
+            if(after) iterator.remove();
+        }
+    }
+    protected void complete(int id, SzurubooruBulkEditReport report){
+        Integer checkpoint = null;
+
+        synchronized(this){
+            if(!inFlight.containsKey(id)) return;
+            inFlight.replace(id, true);
+
+            Iterator<Map.Entry<Integer, Boolean>> iterator = inFlight.entrySet().iterator();
+            while(iterator.hasNext()){
+                Map.Entry<Integer, Boolean> entry = iterator.next();
+                if(!entry.getValue()) break;
+
+                checkpoint = entry.getKey();
+                iterator.remove();
+            }
+
+            if(checkpoint != null) report.lastProcessedId = checkpoint;
+        }
+
+        if(checkpoint != null && checkpointListener != null) checkpointListener.accept(checkpoint);
+    }
+
+    // Spaces requests evenly rather than letting them through in bursts
+    protected void throttle() throws InterruptedException {
+        if(maxRequestsPerSecond == 0) return;
+
+        long wait;
+        synchronized(this){
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextRequestNanos);
+            nextRequestNanos = slot + (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond);
+            wait = slot - now;
+        }
+
+        if(wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    protected CompletableFuture<Void> push(SzurubooruPost post){
+        return post.pushAsync();
+    }
+
+    // Pushes go through the API's retry policy, if any. A failing post doesn't stop the run, but errors while
+    // scanning do: the checkpoint of the report, or of the listener, then tells where to resume from
+    public SzurubooruBulkEditReport run() throws IOException, SzurubooruHTTPException, InterruptedException {
+        SzurubooruBulkEditReport report = new SzurubooruBulkEditReport();
+        report.lastProcessedId = startAfterId;
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<CompletableFuture<Void>> pushes = new ArrayList<>();
+        long start = System.nanoTime();
+
+        synchronized(this){
+            inFlight.clear();
+            checkpointBlocked = false;
+        }
+
+        try{
+            SzurubooruSearch.forEachJsonPageKeyset(api, searchQuery, List.of("posts"), FIELDS, pageSize, false, startAfterId, page -> {
+                for(Map<String, Object> json:page){
+                    SzurubooruPost post = new SzurubooruPost(api, json);
+                    int id = post.getId();
+                    report.scanned.incrementAndGet();
+                    this.begin(id);
+
+                    List<Map<String, Object>> tags = this.editTags((List<Map<String, Object>>) json.getOrDefault("tags", List.of()));
+                    if(tags == null){
+                        report.skipped.incrementAndGet();
+                        this.complete(id, report);
+                        continue;
+                    }
+
+                    try{
+                        permits.acquire();
+                        this.throttle();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while scanning");
+                    }
+
+                    post.getNewJson().put("tags", tags);
+
+                    CompletableFuture<Void> push;
+                    try{
+                        push = this.push(post);
+                    } catch (RuntimeException e) {
+                        push = CompletableFuture.failedFuture(e);
+                    }
+
+                    pushes.add(push.handle((x, e) -> {
+                        permits.release();
+
+                        if(e == null){
+                            report.edited.incrementAndGet();
+                            this.complete(id, report);
+                        }
+                        else{
+                            report.addFailure(id, SzurubooruAsyncAPI.unwrap(e));
+                            this.fail(id);
+                        }
+                        return null;
+                    }));
+                }
+            });
+        } catch (CancellationException e) {
+            if(!Thread.interrupted()) throw e;
+            throw new InterruptedException(e.getMessage());
+        } finally {
+            CompletableFuture.allOf(pushes.toArray(CompletableFuture[]::new)).join();
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+
+        return report;
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+    public Set<String> getAddedTags() {
+        return Collections.unmodifiableSet(added);
+    }
+    public Set<String> getRemovedTags() {
+        return Collections.unmodifiableSet(removed);
+    }
+}
@@ -0,0 +1,8 @@
+package jszuru;
+
+// Called from the downloading thread as bytes are written to the target
+@FunctionalInterface
+public interface SzurubooruDownloadListener {
+    // transferred includes what a resumed download already had, total is -1 when the server didn't tell
+    void progress(long transferred, long total);
+}
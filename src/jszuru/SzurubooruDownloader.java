@@ -0,0 +1,213 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Streams data URLs, such as post contents and thumbnails, through the API's pooled client. A download to a file
+// is written next to it first and resumed with a Range request when interrupted, the file only appears once complete
+@SuppressWarnings("unused")
+public class SzurubooruDownloader {
+    public static final String PART_SUFFIX = ".part";
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    private final SzurubooruAPI api;
+    private int maxResumeAttempts = 3;
+
+    public SzurubooruDownloader(SzurubooruAPI api){
+        this.api = api;
+    }
+
+    // Consecutive dropped connections tolerated without any byte getting through in between
+    public SzurubooruDownloader setMaxResumeAttempts(int maxResumeAttempts) {
+        if(maxResumeAttempts < 0) throw new IllegalArgumentException("Max resume attempts can't be negative");
+
+        this.maxResumeAttempts = maxResumeAttempts;
+        return this;
+    }
+
+    // SHA-1 is the checksum the server stores for every post
+    public static MessageDigest createDigest(){
+        try{
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    protected static void verify(MessageDigest digest, String expectedChecksum, String url) throws IOException {
+        String checksum = HexFormat.of().formatHex(digest.digest());
+
+        if(!checksum.equalsIgnoreCase(expectedChecksum)){
+            throw new IOException("Checksum mismatch for " + url + ": expected " + expectedChecksum + ", got " + checksum);
+        }
+    }
+
+    protected HttpGet createRequest(String url, long offset){
+        HttpGet request = new HttpGet(url);
+        api.getApiHeaders().forEach(request::setHeader);
+        request.setHeader("Accept", "*/*");
+
+        if(offset > 0) request.setHeader("Range", "bytes=" + offset + "-");
+        return request;
+    }
+    protected static long copy(InputStream input, WritableByteChannel target, MessageDigest digest,
+                               long transferred, long total, SzurubooruDownloadListener listener) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int read;
+
+        while((read = input.read(bytes)) >= 0){
+            buffer.clear().limit(read);
+            while(buffer.hasRemaining()) target.write(buffer);
+
+            if(digest != null) digest.update(bytes, 0, read);
+            transferred += read;
+            if(listener != null) listener.progress(transferred, total);
+        }
+
+        return transferred;
+    }
+
+    public long download(String url, OutputStream target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        return download(url, Channels.newChannel(target), expectedChecksum, listener);
+    }
+    // Bytes handed to a channel can't be taken back, so there's no resuming, and a checksum mismatch is only
+    // reported once everything was written. The channel isn't closed. Returns the number of bytes written
+    public long download(String url, WritableByteChannel target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        MessageDigest digest = expectedChecksum == null? null : createDigest();
+
+        try(CloseableHttpResponse response = api.getHttpClient().execute(this.createRequest(url, 0))){
+            SzurubooruAPI.checkApiResponse(response);
+
+            HttpEntity entity = response.getEntity();
+            long transferred = copy(entity.getContent(), target, digest, 0, entity.getContentLength(), listener);
+
+            if(digest != null) verify(digest, expectedChecksum, url);
+            return transferred;
+        }
+    }
+
+    // A part file left by an earlier attempt is resumed rather than downloaded again. When the checksum doesn't
+    // match the part file is deleted, so the next attempt starts over. Returns the size of the file
+    public long download(String url, Path target, String expectedChecksum, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        MessageDigest digest = expectedChecksum == null? null : createDigest();
+        long size;
+
+        try(FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            size = channel.size();
+            channel.position(size);
+            if(digest != null && size > 0) this.digestPart(channel, size, digest);
+
+            int failures = 0;
+            while(true){
+                try{
+                    size = this.transfer(url, channel, size, digest, listener);
+                    break;
+                } catch (IOException e) {
+                    // Whatever made it to the file before the connection dropped is kept. A write may have been cut
+                    // short after the digest saw it or the other way around, so the part is hashed again
+                    long written = channel.position();
+                    failures = written > size? 1 : failures + 1;
+                    size = written;
+
+                    if(failures > maxResumeAttempts) throw e;
+
+                    channel.truncate(size);
+                    if(digest != null){
+                        digest.reset();
+                        this.digestPart(channel, size, digest);
+                    }
+                }
+            }
+        }
+
+        if(digest != null){
+            try{
+                verify(digest, expectedChecksum, url);
+            } catch (IOException e) {
+                Files.deleteIfExists(part);
+                throw e;
+            }
+        }
+
+        try{
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return size;
+    }
+    protected void digestPart(FileChannel channel, long size, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+
+        while(position < size){
+            int read = channel.read(buffer, position);
+            if(read < 0) break;
+
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            position += read;
+        }
+    }
+    // Writes from offset on and returns the size of the file once the response is through
+    protected long transfer(String url, FileChannel channel, long offset, MessageDigest digest, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+        try(CloseableHttpResponse response = api.getHttpClient().execute(this.createRequest(url, offset))){
+            int status = response.getStatusLine().getStatusCode();
+
+            // Nothing left past the part file, it was complete but not yet moved in place
+            if(status == 416/*Range not satisfiable*/ && offset > 0){
+                channel.position(offset);
+                return offset;
+            }
+
+            if(status == 206/*Partial content*/){
+                Header range = response.getFirstHeader("Content-Range");
+                if(range == null || !range.getValue().startsWith("bytes " + offset + "-")){
+                    throw new IOException("Unexpected content range for " + url + ": " + (range == null? null : range.getValue()));
+                }
+            }
+            else{
+                SzurubooruAPI.checkApiResponse(response);
+
+                // The server ignored the range and sends everything again
+                if(offset > 0){
+                    channel.truncate(0);
+                    if(digest != null) digest.reset();
+                    offset = 0;
+                }
+            }
+
+            channel.position(offset);
+
+            HttpEntity entity = response.getEntity();
+            long length = entity.getContentLength();
+            return copy(entity.getContent(), channel, digest, offset, length < 0? -1 : offset + length, listener);
+        }
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+}
@@ -0,0 +1,59 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+
+import java.util.*;
+
+@SuppressWarnings("unused")
+public class SzurubooruFlushReport {
+    protected final List<SzurubooruResource> succeeded = new ArrayList<>();
+    protected final Map<SzurubooruResource, SzurubooruHTTPException> failed = new IdentityHashMap<>();
+    protected final Map<SzurubooruResource, Throwable> conflicts = new IdentityHashMap<>();
+    protected final Map<SzurubooruResource, Throwable> errors = new IdentityHashMap<>();
+    protected long elapsedNanos = 0;
+
+    protected synchronized void addSuccess(SzurubooruResource resource){
+        succeeded.add(resource);
+    }
+    protected synchronized void addFailure(SzurubooruResource resource, SzurubooruHTTPException exception){
+        failed.put(resource, exception);
+    }
+    protected synchronized void addConflict(SzurubooruResource resource, Throwable exception){
+        conflicts.put(resource, exception);
+    }
+    protected synchronized void addError(SzurubooruResource resource, Throwable exception){
+        errors.put(resource, exception);
+    }
+
+    public synchronized List<SzurubooruResource> getSucceeded() {
+        return List.copyOf(succeeded);
+    }
+    // Requests rejected by the server for any reason other than a version conflict
+    public synchronized Map<SzurubooruResource, SzurubooruHTTPException> getFailed() {
+        return Collections.unmodifiableMap(new IdentityHashMap<>(failed));
+    }
+    // Resources modified by someone else since they were last pulled
+    public synchronized Map<SzurubooruResource, Throwable> getConflicts() {
+        return Collections.unmodifiableMap(new IdentityHashMap<>(conflicts));
+    }
+    // Anything else, typically I/O errors
+    public synchronized Map<SzurubooruResource, Throwable> getErrors() {
+        return Collections.unmodifiableMap(new IdentityHashMap<>(errors));
+    }
+    public synchronized int getAttempted() {
+        return succeeded.size() + failed.size() + conflicts.size() + errors.size();
+    }
+    public synchronized boolean isSuccessful() {
+        return failed.isEmpty() && conflicts.isEmpty() && errors.isEmpty();
+    }
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Flushed " + getAttempted() + " resources: " + succeeded.size() + " succeeded, " + failed.size() + " failed, " +
+                conflicts.size() + " conflicts, " + errors.size() + " errors";
+    }
+}
@@ -0,0 +1,303 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
+import jszuru.resources.FileToken;
+import jszuru.resources.PostSafety;
+import jszuru.resources.SzurubooruPost;
+import jszuru.resources.SzurubooruResource;
+import jszuru.search.SzurubooruSearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Imports files as posts through four stages, each with its own workers: hashing on a CPU sized pool, checking
+// which checksums already exist on the server, uploading and creating the posts. Stages are connected by bounded
+// queues, so a slow stage holds back the ones before it instead of letting work pile up in memory
+@SuppressWarnings("unused")
+public class SzurubooruIngest {
+    public record Item(Path file, PostSafety safety, List<String> tags, String source){
+        public Item(Path file, PostSafety safety){
+            this(file, safety, List.of(), null);
+        }
+    }
+    protected record Hashed(Item item, String checksum, long size){}
+    protected record Uploaded(Hashed hashed, FileToken token){}
+
+    public static final String ALREADY_UPLOADED_ERROR_NAME = "PostAlreadyUploadedError";
+
+    private static final Hashed END_OF_HASHES = new Hashed(null, null, 0);
+    private static final Uploaded END_OF_UPLOADS = new Uploaded(null, null);
+
+    private final SzurubooruAPI api;
+    private int hashThreads = Runtime.getRuntime().availableProcessors();
+    private int uploadThreads = 4;
+    private int createThreads = 2;
+    private int queueCapacity = 64;
+    private int checkBatchSize = 50;
+
+    public SzurubooruIngest(SzurubooruAPI api){
+        this.api = api;
+    }
+
+    public SzurubooruIngest setHashThreads(int hashThreads) {
+        if(hashThreads <= 0) throw new IllegalArgumentException("Hash threads must be positive");
+
+        this.hashThreads = hashThreads;
+        return this;
+    }
+    public SzurubooruIngest setUploadThreads(int uploadThreads) {
+        if(uploadThreads <= 0) throw new IllegalArgumentException("Upload threads must be positive");
+
+        this.uploadThreads = uploadThreads;
+        return this;
+    }
+    public SzurubooruIngest setCreateThreads(int createThreads) {
+        if(createThreads <= 0) throw new IllegalArgumentException("Create threads must be positive");
+
+        this.createThreads = createThreads;
+        return this;
+    }
+    public SzurubooruIngest setQueueCapacity(int queueCapacity) {
+        if(queueCapacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive");
+
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+    // Checksums looked up per search request
+    public SzurubooruIngest setCheckBatchSize(int checkBatchSize) {
+        if(checkBatchSize <= 0 || checkBatchSize > 100) throw new IllegalArgumentException("Check batch size must be between 1 and 100");
+
+        this.checkBatchSize = checkBatchSize;
+        return this;
+    }
+
+    public static String checksum(Path file) throws IOException {
+        MessageDigest digest = SzurubooruDownloader.createDigest();
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while(channel.read(buffer) >= 0){
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    protected static ExecutorService createPool(String stage, int threads, BlockingQueue<Runnable> queue, RejectedExecutionHandler rejectionHandler){
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "jszuru-ingest-" + stage + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, rejectionHandler);
+    }
+
+    // Every file ends up in exactly one of the report's created, existing, duplicates or failed collections
+    public SzurubooruIngestReport run(Iterable<Item> items) throws InterruptedException {
+        SzurubooruIngestReport report = new SzurubooruIngestReport();
+        BlockingQueue<Hashed> hashed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Hashed> toUpload = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Uploaded> toCreate = new ArrayBlockingQueue<>(queueCapacity);
+
+        // Once the hashing queue is full the caller hashes the next file itself, which also stops it from submitting more
+        ExecutorService hashPool = createPool("hash", hashThreads, new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+        ExecutorService checkPool = createPool("check", 1, new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        ExecutorService uploadPool = createPool("upload", uploadThreads, new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        ExecutorService createPool = createPool("create", createThreads, new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        List<ExecutorService> pools = List.of(hashPool, checkPool, uploadPool, createPool);
+        long start = System.nanoTime();
+
+        AtomicInteger runningUploaders = new AtomicInteger(uploadThreads);
+        checkPool.execute(() -> this.check(hashed, toUpload, report));
+        for(int i = 0; i < uploadThreads; i++){
+            uploadPool.execute(() -> this.upload(toUpload, toCreate, runningUploaders, report));
+        }
+        for(int i = 0; i < createThreads; i++){
+            createPool.execute(() -> this.create(toCreate, report));
+        }
+
+        try{
+            // The later stages are told the input is over even if iterating the items failed, so they drain and stop
+            try{
+                for(Item item:items){
+                    if(Thread.interrupted()) throw new InterruptedException("Interrupted while submitting files");
+                    hashPool.execute(() -> this.hash(item, hashed, report));
+                }
+            } finally {
+                hashPool.shutdown();
+                hashPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                hashed.put(END_OF_HASHES);
+            }
+
+            for(ExecutorService pool:pools){
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            pools.forEach(ExecutorService::shutdownNow);
+            throw e;
+        } finally {
+            pools.forEach(ExecutorService::shutdown);
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+
+        return report;
+    }
+
+    protected void hash(Item item, BlockingQueue<Hashed> hashed, SzurubooruIngestReport report){
+        report.hashing.start();
+        long start = System.nanoTime();
+
+        try{
+            long size = item.file().toFile().length();
+            String checksum = checksum(item.file());
+            report.hashing.record(size, System.nanoTime() - start);
+
+            hashed.put(new Hashed(item, checksum, size));
+        } catch (IOException | RuntimeException e) {
+            report.addFailure(item.file(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Checksums are looked up a batch at a time, files sharing a checksum with an earlier one are only uploaded once
+    protected void check(BlockingQueue<Hashed> hashed, BlockingQueue<Hashed> toUpload, SzurubooruIngestReport report){
+        Set<String> seen = new HashSet<>();
+        List<Hashed> batch = new ArrayList<>(checkBatchSize);
+        boolean done = false;
+
+        try{
+            while(!done){
+                batch.clear();
+                batch.add(hashed.take());
+                hashed.drainTo(batch, checkBatchSize - 1);
+
+                done = batch.remove(END_OF_HASHES);
+                if(!batch.isEmpty()) this.checkBatch(batch, seen, toUpload, report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            signalEnd(toUpload, END_OF_HASHES, uploadThreads);
+        }
+    }
+    // Once interrupted the whole run is being torn down, so there's no one left to tell
+    protected static <T> void signalEnd(BlockingQueue<T> queue, T marker, int consumers){
+        try{
+            for(int i = 0; i < consumers; i++) queue.put(marker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    protected void checkBatch(List<Hashed> batch, Set<String> seen, BlockingQueue<Hashed> toUpload, SzurubooruIngestReport report) throws InterruptedException {
+        report.checking.start();
+        long start = System.nanoTime();
+
+        List<Hashed> unseen = new ArrayList<>();
+        for(Hashed file:batch){
+            if(seen.add(file.checksum())) unseen.add(file);
+            else report.addDuplicate(file.item().file());
+        }
+        if(unseen.isEmpty()) return;
+
+        Map<String, Integer> existing;
+        try{
+            existing = this.findExisting(unseen.stream().map(Hashed::checksum).toList());
+        } catch (IOException | SzurubooruHTTPException | RuntimeException e) {
+            unseen.forEach(x -> report.addFailure(x.item().file(), e));
+            return;
+        }
+
+        for(Hashed file:unseen){
+            report.checking.record(0, (System.nanoTime() - start) / unseen.size());
+
+            Integer postId = existing.get(file.checksum());
+            if(postId != null) report.addExisting(file.item().file(), postId);
+            else toUpload.put(file);
+        }
+    }
+    // Checksums mapped to the id of the post having that content
+    protected Map<String, Integer> findExisting(List<String> checksums) throws IOException, SzurubooruHTTPException {
+        Map<String, Integer> existing = new HashMap<>();
+        SzurubooruSearch.forEachJson(api, "content-checksum:" + String.join(",", checksums), List.of("posts"), List.of("id", "checksum"), 100,
+                x -> existing.put((String) x.get("checksum"), SzurubooruResource.getIntValue(x.get("id"))));
+
+        return existing;
+    }
+
+    protected FileToken upload(Path file) throws IOException {
+        return api.uploadFile(file);
+    }
+    protected void upload(BlockingQueue<Hashed> toUpload, BlockingQueue<Uploaded> toCreate, AtomicInteger runningUploaders, SzurubooruIngestReport report){
+        try{
+            for(Hashed file = toUpload.take(); file != END_OF_HASHES; file = toUpload.take()){
+                report.uploading.start();
+                long start = System.nanoTime();
+
+                try{
+                    FileToken token = this.upload(file.item().file());
+                    report.uploading.record(file.size(), System.nanoTime() - start);
+
+                    toCreate.put(new Uploaded(file, token));
+                } catch (IOException | RuntimeException e) {
+                    report.addFailure(file.item().file(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The last uploader to finish tells the creators there's nothing left
+            if(runningUploaders.decrementAndGet() == 0) signalEnd(toCreate, END_OF_UPLOADS, createThreads);
+        }
+    }
+
+    protected void create(BlockingQueue<Uploaded> toCreate, SzurubooruIngestReport report){
+        try{
+            for(Uploaded file = toCreate.take(); file != END_OF_UPLOADS; file = toCreate.take()){
+                report.creating.start();
+                long start = System.nanoTime();
+                Item item = file.hashed().item();
+
+                try{
+                    SzurubooruPost post = api.createPost(file.token(), item.safety(), item.tags(), item.source());
+                    report.creating.record(0, System.nanoTime() - start);
+                    report.addCreated(item.file(), post.getId());
+                } catch (SzurubooruHTTPException e) {
+                    // Someone else uploaded the same content since it was checked
+                    if(!ALREADY_UPLOADED_ERROR_NAME.equals(e.getErrorName())){
+                        report.addFailure(item.file(), e);
+                        continue;
+                    }
+
+                    try{
+                        Integer postId = this.findExisting(List.of(file.hashed().checksum())).get(file.hashed().checksum());
+                        report.addExisting(item.file(), postId == null? -1 : postId);
+                    } catch (IOException | SzurubooruHTTPException | RuntimeException lookupException) {
+                        report.addFailure(item.file(), lookupException);
+                    }
+                } catch (IOException | SzurubooruResourceNotSynchronizedException | RuntimeException e) {
+                    report.addFailure(item.file(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+}
@@ -0,0 +1,135 @@
+package jszuru;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@SuppressWarnings("unused")
+public class SzurubooruIngestReport {
+    public static class Stage {
+        private final String name;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile long startedAt = 0;
+        private volatile long finishedAt = 0;
+
+        protected Stage(String name){
+            this.name = name;
+        }
+
+        protected synchronized void start(){
+            if(startedAt == 0) startedAt = System.nanoTime();
+        }
+        protected void record(long bytes, long busyNanos){
+            this.processed.incrementAndGet();
+            this.bytes.addAndGet(bytes);
+            this.busyNanos.addAndGet(busyNanos);
+            finishedAt = System.nanoTime();
+        }
+
+        public String getName() {
+            return name;
+        }
+        public long getProcessed() {
+            return processed.get();
+        }
+        public long getBytes() {
+            return bytes.get();
+        }
+        // Summed over every worker of the stage, so it can exceed the elapsed time
+        public long getBusyNanos() {
+            return busyNanos.get();
+        }
+        // From the first item entering the stage to the last one leaving it
+        public long getElapsedNanos() {
+            return startedAt == 0 || finishedAt < startedAt? 0 : finishedAt - startedAt;
+        }
+        public double getItemsPerSecond() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0? 0 : processed.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+        public double getBytesPerSecond() {
+            long elapsed = getElapsedNanos();
+            return elapsed == 0? 0 : bytes.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d in %d ms (%.1f/s, %.1f MB/s)", name, processed.get(),
+                    TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()), getItemsPerSecond(), getBytesPerSecond() / (1 << 20));
+        }
+    }
+
+    protected final Stage hashing = new Stage("hash");
+    protected final Stage checking = new Stage("check");
+    protected final Stage uploading = new Stage("upload");
+    protected final Stage creating = new Stage("create");
+
+    protected final Map<Path, Integer> created = new LinkedHashMap<>();
+    protected final Map<Path, Integer> existing = new LinkedHashMap<>();
+    protected final List<Path> duplicates = new ArrayList<>();
+    protected final Map<Path, Throwable> failed = new LinkedHashMap<>();
+    protected long elapsedNanos = 0;
+
+    protected synchronized void addCreated(Path file, int postId){
+        created.put(file, postId);
+    }
+    protected synchronized void addExisting(Path file, int postId){
+        existing.put(file, postId);
+    }
+    protected synchronized void addDuplicate(Path file){
+        duplicates.add(file);
+    }
+    protected synchronized void addFailure(Path file, Throwable exception){
+        failed.put(file, exception);
+    }
+
+    public Stage getHashing() {
+        return hashing;
+    }
+    public Stage getChecking() {
+        return checking;
+    }
+    public Stage getUploading() {
+        return uploading;
+    }
+    public Stage getCreating() {
+        return creating;
+    }
+    public List<Stage> getStages() {
+        return List.of(hashing, checking, uploading, creating);
+    }
+
+    // Files mapped to the id of the post created for them
+    public synchronized Map<Path, Integer> getCreated() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(created));
+    }
+    // Files already on the server, mapped to the id of the post having the same content
+    public synchronized Map<Path, Integer> getExisting() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(existing));
+    }
+    // Files with the same content as another file of the same run
+    public synchronized List<Path> getDuplicates() {
+        return List.copyOf(duplicates);
+    }
+    public synchronized Map<Path, Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+    public synchronized boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT, "Ingested in %d ms: %d created, %d already existing, %d duplicates, %d failed",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), created.size(), existing.size(), duplicates.size(), failed.size()));
+        this.getStages().forEach(x -> builder.append("\n  ").append(x));
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+import jszuru.search.SzurubooruSearch;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Downloads the content of every post matching a query into a directory, as <id>.<extension> files. Posts are
+// scanned by id with only the fields needed, files already there are skipped so an interrupted mirror can just be run again
+@SuppressWarnings("unused")
+public class SzurubooruMirror {
+    protected static final List<String> FIELDS = List.of("id", "contentUrl", "checksum", "fileSize");
+
+    private final SzurubooruAPI api;
+    private final String searchQuery;
+    private final Path directory;
+
+    private int pageSize = 100;
+    private int maxConcurrency = 4;
+    private boolean verifyExisting = false;
+    private SzurubooruDownloadListener listener = null;
+
+    public SzurubooruMirror(SzurubooruAPI api, String searchQuery, Path directory){
+        this.api = api;
+        this.searchQuery = searchQuery;
+        this.directory = directory;
+    }
+
+    public SzurubooruMirror setPageSize(int pageSize) {
+        if(pageSize <= 0) throw new IllegalArgumentException("Page size must be positive");
+
+        this.pageSize = pageSize;
+        return this;
+    }
+    // Also caps the downloads waiting for a worker, so the scan doesn't run ahead of them
+    public SzurubooruMirror setMaxConcurrency(int maxConcurrency) {
+        if(maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive");
+
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+    // Hashes files already in the directory instead of only comparing their size
+    public SzurubooruMirror setVerifyExisting(boolean verifyExisting) {
+        this.verifyExisting = verifyExisting;
+        return this;
+    }
+    // Shared by every download, so it's called from several threads at once
+    public SzurubooruMirror setListener(SzurubooruDownloadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    protected static String getFileName(int id, String contentUrl) throws URISyntaxException {
+        String path = new URI(contentUrl).getPath();
+        int dot = path.lastIndexOf('.');
+
+        return dot < 0 || dot < path.lastIndexOf('/')? id + "" : id + path.substring(dot);
+    }
+    // Files only get their final name once complete, so a size mismatch means the post's content was replaced
+    protected boolean isUpToDate(Path file, Object fileSize, String checksum) throws IOException {
+        if(!Files.isRegularFile(file)) return false;
+        // Files over 2 GiB are parsed as longs
+        if(fileSize instanceof Number size && Files.size(file) != size.longValue()) return false;
+
+        return !verifyExisting || checksum == null || checksum.equalsIgnoreCase(SzurubooruIngest.checksum(file));
+    }
+
+    protected static ExecutorService createPool(int threads){
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jszuru-mirror-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // A failing download doesn't stop the run, but errors while scanning do
+    public SzurubooruMirrorReport run() throws IOException, SzurubooruHTTPException, InterruptedException {
+        SzurubooruMirrorReport report = new SzurubooruMirrorReport();
+        SzurubooruDownloader downloader = new SzurubooruDownloader(api);
+        Files.createDirectories(directory);
+
+        ExecutorService pool = createPool(maxConcurrency);
+        Semaphore permits = new Semaphore(maxConcurrency * 2);
+        long start = System.nanoTime();
+
+        try{
+            SzurubooruSearch.forEachJsonPageKeyset(api, searchQuery, List.of("posts"), FIELDS, pageSize, false, null, page -> {
+                for(Map<String, Object> json:page){
+                    int id = SzurubooruResource.getIntValue(json.get("id"));
+                    String checksum = (String) json.get("checksum");
+                    report.scanned.incrementAndGet();
+
+                    Path file;
+                    String url;
+                    try{
+                        file = directory.resolve(getFileName(id, json.get("contentUrl").toString()));
+                        url = api.createDataUrl(json.get("contentUrl").toString());
+
+                        if(this.isUpToDate(file, json.get("fileSize"), checksum)){
+                            report.skipped.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException | URISyntaxException | RuntimeException e) {
+                        report.addFailure(id, e);
+                        continue;
+                    }
+
+                    try{
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while scanning");
+                    }
+
+                    pool.execute(() -> {
+                        try{
+                            report.addDownloaded(downloader.download(url, file, checksum, listener));
+                        } catch (IOException | SzurubooruHTTPException | RuntimeException e) {
+                            report.addFailure(id, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            });
+        } catch (CancellationException e) {
+            if(!Thread.interrupted()) throw e;
+
+            pool.shutdownNow();
+            throw new InterruptedException(e.getMessage());
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+
+        return report;
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+    public Path getDirectory() {
+        return directory;
+    }
+}
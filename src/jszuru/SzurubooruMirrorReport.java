@@ -0,0 +1,59 @@
+package jszuru;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@SuppressWarnings("unused")
+public class SzurubooruMirrorReport {
+    protected final AtomicInteger scanned = new AtomicInteger();
+    protected final AtomicInteger skipped = new AtomicInteger();
+    protected final AtomicInteger downloaded = new AtomicInteger();
+    protected final AtomicLong bytes = new AtomicLong();
+    protected final Map<Integer, Throwable> failed = new LinkedHashMap<>();
+    protected long elapsedNanos = 0;
+
+    protected void addDownloaded(long size){
+        downloaded.incrementAndGet();
+        bytes.addAndGet(size);
+    }
+    protected synchronized void addFailure(int id, Throwable exception){
+        failed.put(id, exception);
+    }
+
+    public int getScanned() {
+        return scanned.get();
+    }
+    // Posts whose file was already in the directory
+    public int getSkipped() {
+        return skipped.get();
+    }
+    public int getDownloaded() {
+        return downloaded.get();
+    }
+    // Size of the downloaded files, resumed ones included as a whole
+    public long getBytes() {
+        return bytes.get();
+    }
+    // Post ids mapped to why their download failed, checksum mismatches included
+    public synchronized Map<Integer, Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+    public synchronized boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0? 0 : bytes.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "Scanned %d posts in %d ms: %d downloaded (%.1f MB/s), %d skipped, %d failed",
+                scanned.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), downloaded.get(), getBytesPerSecond() / (1 << 20),
+                skipped.get(), failed.size());
+    }
+}
@@ -0,0 +1,172 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Retries pushes rejected because someone else modified the resource in the meantime: the resource is pulled
+// again, the pending edits are merged on top of the fresh state and the push is sent again after a backoff
+@SuppressWarnings("unused")
+public class SzurubooruRetryPolicy {
+    // Error the server answers with when the version sent along an edit is outdated
+    public static final String CONFLICT_ERROR_NAME = "IntegrityError";
+
+    @FunctionalInterface
+    public interface FieldMerger {
+        // base is the value the edit started from, ours the pending edit and theirs the value now on the server
+        Object merge(Object base, Object ours, Object theirs);
+    }
+
+    // Pending edits simply overwrite whatever changed on the server
+    public static final FieldMerger OURS = (base, ours, theirs) -> ours;
+    // Keeps the elements someone else added or removed, then applies our own additions and removals.
+    // Elements are told apart by id, by primary name or by value, whichever applies
+    public static final FieldMerger LIST_MERGE = (base, ours, theirs) -> {
+        if(!(ours instanceof List<?> ourList)) return ours;
+
+        List<?> baseList = base instanceof List<?> list? list : List.of();
+        List<?> theirList = theirs instanceof List<?> list? list : List.of();
+
+        Set<Object> baseKeys = new HashSet<>();
+        baseList.forEach(x -> baseKeys.add(elementKey(x)));
+        Set<Object> ourKeys = new HashSet<>();
+        ourList.forEach(x -> ourKeys.add(elementKey(x)));
+
+        List<Object> merged = new ArrayList<>();
+        Set<Object> mergedKeys = new HashSet<>();
+        for(Object element:theirList){
+            Object key = elementKey(element);
+            if(baseKeys.contains(key) && !ourKeys.contains(key)) continue;
+            if(mergedKeys.add(key)) merged.add(element);
+        }
+        for(Object element:ourList){
+            Object key = elementKey(element);
+            if(!baseKeys.contains(key) && mergedKeys.add(key)) merged.add(element);
+        }
+
+        return merged;
+    };
+
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(2);
+    private double backoffMultiplier = 2;
+    private final Map<String, FieldMerger> fieldMergers = new ConcurrentHashMap<>();
+
+    private final AtomicLong pushes = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public SzurubooruRetryPolicy(){}
+
+    protected static Object elementKey(Object element){
+        if(element instanceof Map<?, ?> map){
+            if(map.get("id") instanceof Number id) return id.intValue();
+            if(map.get("names") instanceof List<?> names && !names.isEmpty()) return names.get(0).toString().toLowerCase(Locale.ROOT);
+        }
+
+        return element;
+    }
+    public static boolean isConflict(Throwable throwable){
+        if(throwable instanceof SzurubooruResourceNotSynchronizedException) return true;
+
+        return throwable instanceof SzurubooruHTTPException httpException &&
+                CONFLICT_ERROR_NAME.equals(httpException.getErrorName());
+    }
+
+    public SzurubooruRetryPolicy setMaxAttempts(int maxAttempts) {
+        if(maxAttempts <= 0) throw new IllegalArgumentException("Max attempts must be positive");
+
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+    public SzurubooruRetryPolicy setBackoff(Duration initialBackoff, Duration maxBackoff, double backoffMultiplier) {
+        if(backoffMultiplier < 1) throw new IllegalArgumentException("Backoff multiplier can't be lower than 1");
+
+        this.initialBackoff = Objects.requireNonNull(initialBackoff);
+        this.maxBackoff = Objects.requireNonNull(maxBackoff);
+        this.backoffMultiplier = backoffMultiplier;
+        return this;
+    }
+    public SzurubooruRetryPolicy setFieldMerger(String field, FieldMerger merger) {
+        fieldMergers.put(field, Objects.requireNonNull(merger));
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    public FieldMerger getFieldMerger(String field, Object value) {
+        FieldMerger merger = fieldMergers.get(field);
+        if(merger != null) return merger;
+
+        return value instanceof List<?>? LIST_MERGE : OURS;
+    }
+    // Pending edits rebased on top of the freshly pulled JSON
+    public Map<String, Object> merge(Map<String, Object> base, Map<String, Object> ours, Map<String, Object> theirs) {
+        Map<String, Object> merged = new HashMap<>();
+        ours.forEach((field, value) -> merged.put(field, this.getFieldMerger(field, value).merge(base.get(field), value, theirs.get(field))));
+
+        return merged;
+    }
+
+    // Exponential backoff with jitter, so workers conflicting on the same resource don't retry in lockstep
+    public long getBackoffMillis(int attempt) {
+        double backoff = initialBackoff.toMillis() * Math.pow(backoffMultiplier, attempt - 1);
+        long capped = (long) Math.min(backoff, maxBackoff.toMillis());
+
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    public void recordPush() {
+        pushes.incrementAndGet();
+    }
+    public void recordConflict() {
+        conflicts.incrementAndGet();
+    }
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+    public void recordResolved() {
+        resolved.incrementAndGet();
+    }
+    public void recordExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    public long getPushes() {
+        return pushes.get();
+    }
+    public long getConflicts() {
+        return conflicts.get();
+    }
+    public long getRetries() {
+        return retries.get();
+    }
+    // Pushes that went through after at least one conflict
+    public long getResolved() {
+        return resolved.get();
+    }
+    // Pushes abandoned after running out of attempts
+    public long getExhausted() {
+        return exhausted.get();
+    }
+    public double getConflictRate() {
+        long total = pushes.get();
+        return total == 0? 0 : (double) conflicts.get() / total;
+    }
+    public void resetStatistics() {
+        pushes.set(0);
+        conflicts.set(0);
+        retries.set(0);
+        resolved.set(0);
+        exhausted.set(0);
+    }
+}
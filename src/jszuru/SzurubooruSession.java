@@ -0,0 +1,106 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+// Unit of work: tracks resources while they're being edited, then pushes every modified one in a single flush
+@SuppressWarnings("unused")
+public class SzurubooruSession {
+    private final SzurubooruAPI api;
+    private final int maxConcurrency;
+    private final Set<SzurubooruResource> tracked = Collections.newSetFromMap(new LinkedHashMap<>());
+
+    public SzurubooruSession(SzurubooruAPI api, int maxConcurrency){
+        if(maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive");
+
+        this.api = api;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public synchronized <T extends SzurubooruResource> T track(T resource){
+        tracked.add(Objects.requireNonNull(resource));
+        return resource;
+    }
+    public synchronized void trackAll(Collection<? extends SzurubooruResource> resources){
+        resources.forEach(this::track);
+    }
+    public synchronized void untrack(SzurubooruResource resource){
+        tracked.remove(resource);
+    }
+    public synchronized void clear(){
+        tracked.clear();
+    }
+
+    public synchronized List<SzurubooruResource> getTracked(){
+        return List.copyOf(tracked);
+    }
+    // Resources with pending edits, i.e. a non-empty newJson
+    public synchronized List<SzurubooruResource> getDirty(){
+        return tracked.stream()
+                .filter(x -> !x.getNewJson().isEmpty())
+                .toList();
+    }
+    public boolean isDirty(){
+        return !this.getDirty().isEmpty();
+    }
+
+    protected CompletableFuture<Void> push(SzurubooruResource resource){
+        return resource.pushAsync();
+    }
+
+    // Pushes every dirty resource with at most maxConcurrency requests in flight. A failing push doesn't stop
+    // the others: every outcome ends up in the report, and failed resources keep their pending edits.
+    // Conflicts are only reported once the API's retry policy, if any, has given up on them
+    public SzurubooruFlushReport flush() throws InterruptedException {
+        SzurubooruFlushReport report = new SzurubooruFlushReport();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<CompletableFuture<Void>> pushes = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try{
+            for(SzurubooruResource resource:this.getDirty()){
+                permits.acquire();
+
+                CompletableFuture<Void> push;
+                try{
+                    push = this.push(resource);
+                } catch (RuntimeException e) {
+                    push = CompletableFuture.failedFuture(e);
+                }
+
+                pushes.add(push.handle((x, e) -> {
+                    permits.release();
+
+                    if(e == null){
+                        report.addSuccess(resource);
+                        return null;
+                    }
+
+                    Throwable cause = SzurubooruAsyncAPI.unwrap(e);
+                    if(SzurubooruRetryPolicy.isConflict(cause)) report.addConflict(resource, cause);
+                    else if(cause instanceof SzurubooruHTTPException httpException) report.addFailure(resource, httpException);
+                    else report.addError(resource, cause);
+
+                    return null;
+                }));
+            }
+        } finally {
+            // Whatever was already sent is still awaited, so the report stays consistent with the server
+            CompletableFuture.allOf(pushes.toArray(CompletableFuture[]::new)).join();
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+
+        return report;
+    }
+
+    public SzurubooruAPI getApi() {
+        return api;
+    }
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
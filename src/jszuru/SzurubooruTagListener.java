@@ -0,0 +1,13 @@
+package jszuru;
+
+import jszuru.resources.SzurubooruTag;
+
+import java.util.List;
+
+// Notified after a tag has been successfully pushed to or deleted from the server through this API
+@SuppressWarnings("unused")
+public interface SzurubooruTagListener {
+    void tagPushed(SzurubooruTag tag);
+    // The tag's JSON is already cleared by then, so its former names are passed along
+    default void tagDeleted(SzurubooruTag tag, List<String> names){}
+}
@@ -0,0 +1,247 @@
+package jszuru;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.*;
+import java.net.URLConnection;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Content of an upload, streamed to the connection from a file, a stream or a buffer without being copied
+// into memory first. The MIME type is detected from the leading bytes, falling back to the file name
+@SuppressWarnings("unused")
+public class SzurubooruUploadBody extends AbstractContentBody {
+    protected static final int CHUNK_SIZE = 1 << 20;
+    protected static final int SNIFF_LENGTH = 32;
+    // The server doesn't need a name, but the multipart part and the file token carry one
+    public static final String DEFAULT_FILENAME = "upload";
+
+    private final Path path;
+    private final InputStream stream;
+    private final ByteBuffer buffer;
+    private final String filename;
+    private final long contentLength;
+    private final SzurubooruUploadListener listener;
+
+    protected SzurubooruUploadBody(ContentType contentType, Path path, InputStream stream, ByteBuffer buffer,
+                                   String filename, long contentLength, SzurubooruUploadListener listener){
+        super(contentType);
+
+        this.path = path;
+        this.stream = stream;
+        this.buffer = buffer;
+        this.filename = filename == null? DEFAULT_FILENAME : filename;
+        this.contentLength = contentLength;
+        this.listener = listener;
+    }
+
+    public static SzurubooruUploadBody of(Path path, SzurubooruUploadListener listener) throws IOException {
+        byte[] head;
+        try(InputStream input = Files.newInputStream(path)){
+            head = input.readNBytes(SNIFF_LENGTH);
+        }
+
+        String filename = path.getFileName().toString();
+        String mimeType = detectMimeType(head, filename);
+        if(mimeType == null) mimeType = Files.probeContentType(path);
+
+        return new SzurubooruUploadBody(toContentType(mimeType), path, null, null, filename, Files.size(path), listener);
+    }
+    // The stream is read once, while the upload is sent, and isn't closed. A negative length means unknown
+    public static SzurubooruUploadBody of(InputStream stream, String filename, long contentLength, SzurubooruUploadListener listener) throws IOException {
+        InputStream input = stream.markSupported()? stream : new BufferedInputStream(stream);
+
+        input.mark(SNIFF_LENGTH);
+        byte[] head = input.readNBytes(SNIFF_LENGTH);
+        input.reset();
+
+        return new SzurubooruUploadBody(toContentType(detectMimeType(head, filename)), null, input, null, filename, Math.max(contentLength, -1), listener);
+    }
+    // The remaining bytes of the buffer are sent, its position is left untouched
+    public static SzurubooruUploadBody of(ByteBuffer buffer, String filename, SzurubooruUploadListener listener){
+        ByteBuffer content = buffer.slice();
+        byte[] head = new byte[Math.min(SNIFF_LENGTH, content.remaining())];
+        content.duplicate().get(head);
+
+        return new SzurubooruUploadBody(toContentType(detectMimeType(head, filename)), null, null, content, filename, content.remaining(), listener);
+    }
+
+    protected static ContentType toContentType(String mimeType){
+        return mimeType == null? ContentType.APPLICATION_OCTET_STREAM : ContentType.create(mimeType);
+    }
+    protected static boolean startsWith(byte[] head, int offset, String signature){
+        byte[] expected = signature.getBytes(StandardCharsets.ISO_8859_1);
+        return head.length >= offset + expected.length &&
+                Arrays.equals(head, offset, offset + expected.length, expected, 0, expected.length);
+    }
+    // Signatures of the formats the server accepts, null when none matches and the name doesn't tell either
+    public static String detectMimeType(byte[] head, String filename){
+        if(startsWith(head, 0, "\u00FF\u00D8\u00FF")) return "image/jpeg";
+        if(startsWith(head, 0, "\u0089PNG\r\n\u001A\n")) return "image/png";
+        if(startsWith(head, 0, "GIF87a") || startsWith(head, 0, "GIF89a")) return "image/gif";
+        if(startsWith(head, 0, "RIFF") && startsWith(head, 8, "WEBP")) return "image/webp";
+        if(startsWith(head, 0, "BM")) return "image/bmp";
+        if(startsWith(head, 4, "ftypavif") || startsWith(head, 4, "ftypavis")) return "image/avif";
+        if(startsWith(head, 4, "ftypheic") || startsWith(head, 4, "ftypheix") || startsWith(head, 4, "ftypmif1")) return "image/heif";
+        if(startsWith(head, 4, "ftypqt")) return "video/quicktime";
+        if(startsWith(head, 4, "ftyp")) return "video/mp4";
+        if(startsWith(head, 0, "\u001AE\u00DF\u00A3")) return "video/webm";
+        if(startsWith(head, 0, "FWS") || startsWith(head, 0, "CWS") || startsWith(head, 0, "ZWS")) return "application/x-shockwave-flash";
+
+        return filename == null? null : URLConnection.guessContentTypeFromName(filename);
+    }
+
+    protected void report(long transferred){
+        if(listener != null) listener.progress(transferred, contentLength);
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+    @Override
+    public String getTransferEncoding() {
+        return "binary";
+    }
+    // A stream can only be sent once, and httpmime treats any part of known length as repeatable, so its length is
+    // kept to the progress reports and the java.net.http publisher
+    @Override
+    public long getContentLength() {
+        return stream != null? -1 : contentLength;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        if(path != null) this.writeFile(out);
+        else if(buffer != null) this.writeBuffer(out);
+        else this.writeStream(out);
+    }
+    // Read in chunks to report progress. The output stream isn't a file or socket channel, so transferTo still
+    // copies through a temporary buffer, but a bounded one rather than the whole file
+    protected void writeFile(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            long position = 0;
+
+            while(position < size){
+                position += channel.transferTo(position, Math.min(CHUNK_SIZE, size - position), target);
+                this.report(position);
+            }
+        }
+    }
+    protected void writeBuffer(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        ByteBuffer content = buffer.duplicate();
+
+        while(content.hasRemaining()){
+            ByteBuffer chunk = content.duplicate();
+            chunk.limit(chunk.position() + Math.min(CHUNK_SIZE, chunk.remaining()));
+
+            while(chunk.hasRemaining()) target.write(chunk);
+            content.position(chunk.limit());
+            this.report(content.position());
+        }
+    }
+    protected void writeStream(OutputStream out) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        long transferred = 0;
+        int read;
+
+        while((read = stream.read(chunk)) >= 0){
+            out.write(chunk, 0, read);
+            transferred += read;
+            this.report(transferred);
+        }
+    }
+
+    // The same content for java.net.http, progress being counted as the client consumes it
+    public HttpRequest.BodyPublisher toBodyPublisher() throws FileNotFoundException {
+        HttpRequest.BodyPublisher publisher;
+
+        if(path != null){
+            publisher = HttpRequest.BodyPublishers.ofFile(path);
+        }
+        else if(buffer != null && buffer.hasArray()){
+            publisher = HttpRequest.BodyPublishers.ofByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        else{
+            InputStream input = buffer != null? new ByteBufferInputStream(buffer.duplicate()) : stream;
+            publisher = HttpRequest.BodyPublishers.ofInputStream(() -> input);
+            if(contentLength >= 0) publisher = HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength);
+        }
+
+        return listener == null? publisher : new ProgressPublisher(publisher);
+    }
+
+    protected static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        protected ByteBufferInputStream(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining()? buffer.get() & 0xFF : -1;
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if(!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    protected class ProgressPublisher implements HttpRequest.BodyPublisher {
+        private final HttpRequest.BodyPublisher delegate;
+
+        protected ProgressPublisher(HttpRequest.BodyPublisher delegate){
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            AtomicLong transferred = new AtomicLong();
+
+            delegate.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+                @Override
+                public void onNext(ByteBuffer item) {
+                    long total = transferred.addAndGet(item.remaining());
+                    subscriber.onNext(item);
+                    report(total);
+                }
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package jszuru;
+
+// Called from the thread sending the content, as bytes are handed to the connection
+@FunctionalInterface
+public interface SzurubooruUploadListener {
+    // total is -1 when the length of the content isn't known upfront
+    void progress(long transferred, long total);
+}
@@ -0,0 +1,134 @@
+package jszuru.resources;
+
+import java.time.Duration;
+import java.util.*;
+
+// Tag and pool categories rarely change but are needed for every tag or pool created without one, so the
+// listing is kept for a while. Categories edited through the API update the cached listing in place
+@SuppressWarnings("unused")
+public class SzurubooruCategoryCache {
+    protected static class Listing {
+        protected final Map<String, SzurubooruCategoryResource> byName = new LinkedHashMap<>();
+        protected final long loadedAt;
+
+        protected Listing(long loadedAt){
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long timeToLive;
+    private final Map<Class<?>, Listing> listings = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    // A zero time to live disables the cache
+    public SzurubooruCategoryCache(Duration timeToLive){
+        if(timeToLive.isNegative()) throw new IllegalArgumentException("Time to live can't be negative");
+
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    public boolean isEnabled(){
+        return timeToLive > 0;
+    }
+    protected Listing getListing(Class<?> type){
+        Listing listing = listings.get(type);
+        if(listing == null) return null;
+
+        if(System.nanoTime() - listing.loadedAt > timeToLive){
+            listings.remove(type);
+            return null;
+        }
+
+        return listing;
+    }
+    protected static String getName(SzurubooruCategoryResource category){
+        Object name = category.getJson().get("name");
+        return name == null? null : name.toString();
+    }
+
+    // Null when the categories of that type haven't been listed yet, or the listing expired
+    public synchronized <T extends SzurubooruCategoryResource> List<T> get(Class<T> type){
+        Listing listing = this.getListing(type);
+        if(listing == null){
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return listing.byName.values()
+                .stream()
+                .map(type::cast)
+                .toList();
+    }
+    public synchronized <T extends SzurubooruCategoryResource> T get(Class<T> type, String name){
+        Listing listing = this.getListing(type);
+        if(listing == null){
+            misses++;
+            return null;
+        }
+
+        SzurubooruCategoryResource category = listing.byName.get(name);
+        if(category == null) misses++;
+        else hits++;
+
+        return category == null? null : type.cast(category);
+    }
+    public synchronized <T extends SzurubooruCategoryResource> void put(Class<T> type, List<T> categories){
+        if(!this.isEnabled()) return;
+
+        Listing listing = new Listing(System.nanoTime());
+        for(T category:categories){
+            String name = getName(category);
+            if(name != null) listing.byName.put(name, category);
+        }
+
+        listings.put(type, listing);
+    }
+
+    // After a push the category may have been renamed, so it is looked up by identity first
+    public synchronized void update(SzurubooruCategoryResource category){
+        Listing listing = this.getListing(category.getClass());
+        String name = getName(category);
+        if(listing == null || name == null) return;
+
+        listing.byName.values().removeIf(x -> x == category);
+        listing.byName.put(name, category);
+    }
+    // Only one category of each type can be the default one
+    public synchronized void updateDefault(SzurubooruCategoryResource category){
+        Listing listing = this.getListing(category.getClass());
+        if(listing == null) return;
+
+        for(SzurubooruCategoryResource other:listing.byName.values()){
+            if(other != category && Boolean.TRUE.equals(other.getJson().get("default"))) other.markDefault(false);
+        }
+
+        this.update(category);
+    }
+    public synchronized void remove(SzurubooruCategoryResource category, String name){
+        Listing listing = this.getListing(category.getClass());
+        if(listing == null) return;
+
+        listing.byName.values().removeIf(x -> x == category);
+        if(name != null) listing.byName.remove(name);
+    }
+
+    public synchronized void invalidate(Class<? extends SzurubooruCategoryResource> type){
+        listings.remove(type);
+    }
+    public synchronized void clear(){
+        listings.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+    public synchronized long getMisses() {
+        return misses;
+    }
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLive);
+    }
+}
@@ -6,8 +6,10 @@ import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class SzurubooruCategoryResource extends SzurubooruResource{
     public SzurubooruCategoryResource(SzurubooruAPI api, Map<String, Object> initialJson){
@@ -20,7 +22,50 @@ public abstract class SzurubooruCategoryResource extends SzurubooruResource{
 
         Map<String, Object> data = api.call("PUT", urlParts, null, null);
         this.updateJson(data, true);
+        api.getCategoryCache().updateDefault(this);
 
         return this;
     }
+    public CompletableFuture<SzurubooruCategoryResource> setDefaultAsync(){
+        List<String> urlParts = new ArrayList<>(this.getInstanceUrlParts());
+        urlParts.add("default");
+
+        return api.getAsyncApi()
+                .callAsync("PUT", urlParts, null, null)
+                .thenApply(data -> {
+                    this.updateJsonAsync(data, true);
+                    api.getCategoryCache().updateDefault(this);
+                    return this;
+                });
+    }
+
+    @Override
+    public void push() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        super.push();
+        api.getCategoryCache().update(this);
+    }
+    @Override
+    public void delete() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        Object name = json.get("name");
+        super.delete();
+        api.getCategoryCache().remove(this, (String) name);
+    }
+    @Override
+    public CompletableFuture<Void> pushAsync() {
+        return super.pushAsync().thenRun(() -> api.getCategoryCache().update(this));
+    }
+    @Override
+    public CompletableFuture<Void> deleteAsync() {
+        Object name = json.get("name");
+        return super.deleteAsync().thenRun(() -> api.getCategoryCache().remove(this, (String) name));
+    }
+
+    // Keeps the flag of a cached category consistent once another one became the default
+    protected void markDefault(boolean isDefault){
+        Map<String, Object> updated = new HashMap<>(json);
+        updated.put("default", isDefault);
+
+        json = updated;
+        transformedValues.remove("default");
+    }
 }
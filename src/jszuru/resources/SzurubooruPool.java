@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 public class SzurubooruPool extends SzurubooruResource {
     public SzurubooruPool(SzurubooruAPI api, Map<String, Object> initialJson){
@@ -26,25 +28,34 @@ public class SzurubooruPool extends SzurubooruResource {
         return List.of("pools");
     }
 
+    @Override
+    protected List<Object> cacheKeys() {
+        Object id = json.get("id");
+        return id == null? List.of() : List.of(getIntValue(id));
+    }
+
     @Override
     public List<String> lazyLoadComponents() {
         return List.of("id", "names", "category", "description", "postCount", "posts");
     }
 
-    @Override
-    protected Map<String, Function<Object, Object>> getterTransforms() {
-        Function<Object, Object> lambda = x -> new SzurubooruPool(api, ((Map<String, Object>) x));
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms = Map.of(
+            "posts", (api, x) -> new SzurubooruPost(api, (Map<String, Object>) x)
+    );
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms = Map.of(
+            "posts", (api, x) -> {
+                SzurubooruPost post = (SzurubooruPost) x;
+                return Map.of("id", post.getId());
+            }
+    );
 
-        return Map.of("posts", lambda);
+    @Override
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms() {
+        return getterTransforms;
     }
     @Override
-    protected Map<String, Function<Object, Object>> setterTransforms() {
-        Function<Object, Object> lambdaPosts = (x) -> {
-            SzurubooruPost post = (SzurubooruPost) x;
-            return Map.of("id", post.getId());
-        };
-
-        return Map.of("posts", lambdaPosts);
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms() {
+        return setterTransforms;
     }
 
     @Override
@@ -75,8 +86,18 @@ public class SzurubooruPool extends SzurubooruResource {
     public void delete() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         this.deleteGeneric(x -> List.of("pool", this.getNames().get(0)));
     }
+    @Override
+    public CompletableFuture<Void> pushAsync(){
+        List<String> postUrlParts = List.of("pool");
 
-    public void mergeFrom(SzurubooruPool source, boolean addAsAlias) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+        return this.pushGenericAsync(SzurubooruResource::getInstanceUrlParts, x -> postUrlParts);
+    }
+    @Override
+    public CompletableFuture<Void> deleteAsync(){
+        return this.deleteGenericAsync(x -> List.of("pool", this.getNames().get(0)));
+    }
+
+    protected Map<String, Object> createMergeBody(SzurubooruPool source) throws SzurubooruResourceNotSynchronizedException {
         if(!source.json.containsKey("version") || !source.newJson.isEmpty()){
             throw new SzurubooruResourceNotSynchronizedException("Target pool is not synchronized");
         }
@@ -84,12 +105,43 @@ public class SzurubooruPool extends SzurubooruResource {
             throw new SzurubooruResourceNotSynchronizedException("This pool is not synchronized");
         }
 
-        Map<String, Object> body = Map.of(
+        return Map.of(
                 "removeVersion", source.json.get("version"),
                 "remove", source.getId(),
                 "mergeToVersion", json.get("version"),
                 "mergeTo", this.getId()
         );
+    }
+    public CompletableFuture<Void> mergeFromAsync(SzurubooruPool source, boolean addAsAlias){
+        Map<String, Object> body;
+
+        try{
+            body = this.createMergeBody(source);
+        } catch (SzurubooruResourceNotSynchronizedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return api.getAsyncApi()
+                .callAsync("POST", List.of("pool-merge"), null, body)
+                .thenCompose(data -> {
+                    this.updateJsonAsync(data, true);
+                    List<String> sourceNames = addAsAlias? source.getNames() : null;
+                    source.evictFromCache();
+                    source.setJson(new HashMap<>());
+
+                    if(!addAsAlias) return CompletableFuture.completedFuture(null);
+
+                    List<String> names = new ArrayList<>(this.getNames());
+                    names.addAll(sourceNames);
+                    this.setNames(names
+                            .stream()
+                            .distinct()
+                            .toList());
+                    return this.pushAsync();
+                });
+    }
+    public void mergeFrom(SzurubooruPool source, boolean addAsAlias) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+        Map<String, Object> body = this.createMergeBody(source);
 
         Map<String, Object> data = api.call("POST", List.of("pool-merge"), null, body);
         this.updateJson(data, true);
@@ -104,7 +156,8 @@ public class SzurubooruPool extends SzurubooruResource {
             this.push();
         }
 
-        source.json = new HashMap<>();
+        source.evictFromCache();
+        source.setJson(new HashMap<>());
     }
 
     public int getId(){
@@ -188,6 +241,32 @@ public class SzurubooruPool extends SzurubooruResource {
         return this;
     }
 
+    // Ids straight from the JSON, pending edits included, without wrapping every member in a SzurubooruPost
+    public int[] getPostIds(){
+        try{
+            if(!newJson.containsKey("posts") && !json.containsKey("posts")) this.pull();
+        } catch (IOException | SzurubooruException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        List<Map<String, Object>> posts = (List<Map<String, Object>>) newJson.getOrDefault("posts", json.get("posts"));
+        return posts == null? new int[0] : posts.stream()
+                .mapToInt(x -> getIntValue(x.get("id")))
+                .toArray();
+    }
+    public SzurubooruPoolPostEdit editPosts(){
+        return new SzurubooruPoolPostEdit(this, this.getPostIds());
+    }
+    // Members are fetched a page at a time through a pool:<id> search, so only the current page is held in memory.
+    // Search results follow the search order rather than the order of the pool
+    public Iterable<SzurubooruPost> iteratePosts(int pageSize){
+        return api.iteratePost("pool:" + this.getId(), pageSize, false);
+    }
+    public Stream<SzurubooruPost> streamPosts(int pageSize){
+        return api.streamPost("pool:" + this.getId(), pageSize, false);
+    }
+
     @Override
     public String toString() {
         return this.getNames().get(0);
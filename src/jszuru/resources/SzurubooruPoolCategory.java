@@ -7,10 +7,9 @@ import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 public class SzurubooruPoolCategory extends SzurubooruCategoryResource {
     public SzurubooruPoolCategory(SzurubooruAPI api, Map<String, Object> initialJson){
@@ -35,12 +34,12 @@ public class SzurubooruPoolCategory extends SzurubooruCategoryResource {
     }
 
     @Override
-    protected Map<String, Function<Object, Object>> getterTransforms() {
-        return new HashMap<>();
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms() {
+        return Map.of();
     }
     @Override
-    protected Map<String, Function<Object, Object>> setterTransforms() {
-        return new HashMap<>();
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms() {
+        return Map.of();
     }
 
     @Override
@@ -0,0 +1,191 @@
+package jszuru.resources;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
+
+import java.io.IOException;
+import java.util.*;
+
+// Edits the post list of a pool as plain ids, without materializing a SzurubooruPost per member.
+// The edits are diffed against the list they started from, so only a real change ends up in a PUT
+@SuppressWarnings("unused")
+public class SzurubooruPoolPostEdit {
+    private final SzurubooruPool pool;
+    private final int[] base;
+
+    private int[] ids;
+    private int size;
+    private final Set<Integer> members = new HashSet<>();
+
+    protected SzurubooruPoolPostEdit(SzurubooruPool pool, int[] base){
+        this.pool = pool;
+        this.base = base;
+        this.ids = Arrays.copyOf(base, Math.max(16, base.length));
+        this.size = base.length;
+
+        for(int id:base) members.add(id);
+    }
+
+    // Posts already in the pool are left where they are
+    public SzurubooruPoolPostEdit append(int... postIds){
+        for(int id:postIds){
+            if(!members.add(id)) continue;
+
+            if(size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        return this;
+    }
+    // Inserts before the post currently at index, or at the end when index is the size. A post already in the
+    // pool is moved there instead, ending up one index lower when it came from before it
+    public SzurubooruPoolPostEdit insert(int index, int postId){
+        Objects.checkIndex(index, size + 1);
+        if(members.contains(postId)) return this.move(postId, this.indexOf(postId) < index? index - 1 : index);
+
+        members.add(postId);
+        if(size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = postId;
+        size++;
+
+        return this;
+    }
+    public SzurubooruPoolPostEdit remove(int... postIds){
+        Set<Integer> removed = new HashSet<>();
+        for(int id:postIds){
+            if(members.remove(id)) removed.add(id);
+        }
+        if(removed.isEmpty()) return this;
+
+        int n = 0;
+        for(int i = 0; i < size; i++){
+            if(!removed.contains(ids[i])) ids[n++] = ids[i];
+        }
+        size = n;
+
+        return this;
+    }
+    // Moves a member so that it ends up at the given index
+    public SzurubooruPoolPostEdit move(int postId, int index){
+        Objects.checkIndex(index, size);
+
+        int from = this.indexOf(postId);
+        if(from < 0) throw new NoSuchElementException("Post " + postId + " is not in the pool");
+
+        if(from < index) System.arraycopy(ids, from + 1, ids, from, index - from);
+        else System.arraycopy(ids, index, ids, index + 1, from - index);
+        ids[index] = postId;
+
+        return this;
+    }
+    public SzurubooruPoolPostEdit reorder(int[] postIds){
+        Set<Integer> reordered = new HashSet<>();
+        for(int id:postIds) reordered.add(id);
+        if(reordered.size() != postIds.length || !reordered.equals(members)){
+            throw new IllegalArgumentException("The new order must contain exactly the posts of the pool");
+        }
+
+        ids = Arrays.copyOf(postIds, Math.max(16, postIds.length));
+        return this;
+    }
+
+    public int indexOf(int postId){
+        if(!members.contains(postId)) return -1;
+
+        for(int i = 0; i < size; i++){
+            if(ids[i] == postId) return i;
+        }
+
+        return -1;
+    }
+    public boolean contains(int postId){
+        return members.contains(postId);
+    }
+    public int size(){
+        return size;
+    }
+    public int[] getPostIds(){
+        return Arrays.copyOf(ids, size);
+    }
+
+    public int[] getAdded(){
+        Set<Integer> baseMembers = new HashSet<>();
+        for(int id:base) baseMembers.add(id);
+
+        return Arrays.stream(ids, 0, size)
+                .filter(x -> !baseMembers.contains(x))
+                .toArray();
+    }
+    public int[] getRemoved(){
+        return Arrays.stream(base)
+                .filter(x -> !members.contains(x))
+                .toArray();
+    }
+    // The fewest posts that have to change position to turn the old order into the new one: everything outside
+    // the longest run of kept posts that is still in its original relative order
+    public int[] getMoved(){
+        Map<Integer, Integer> basePositions = new HashMap<>();
+        for(int i = 0; i < base.length; i++) basePositions.put(base[i], i);
+
+        int[] kept = Arrays.stream(ids, 0, size)
+                .filter(basePositions::containsKey)
+                .toArray();
+
+        // Patience sorting over the original positions, tails[k] being the index in kept ending the best run of length k + 1
+        int[] tails = new int[kept.length];
+        int[] previous = new int[kept.length];
+        int length = 0;
+        for(int i = 0; i < kept.length; i++){
+            int position = basePositions.get(kept[i]);
+
+            int low = 0, high = length;
+            while(low < high){
+                int middle = (low + high) >>> 1;
+                if(basePositions.get(kept[tails[middle]]) < position) low = middle + 1;
+                else high = middle;
+            }
+
+            previous[i] = low > 0? tails[low - 1] : -1;
+            tails[low] = i;
+            if(low == length) length++;
+        }
+
+        boolean[] inPlace = new boolean[kept.length];
+        for(int i = length > 0? tails[length - 1] : -1; i >= 0; i = previous[i]) inPlace[i] = true;
+
+        int[] moved = new int[kept.length - length];
+        int n = 0;
+        for(int i = 0; i < kept.length; i++){
+            if(!inPlace[i]) moved[n++] = kept[i];
+        }
+
+        return moved;
+    }
+    public boolean hasChanges(){
+        return !Arrays.equals(base, 0, base.length, ids, 0, size);
+    }
+
+    // Stages the new list on the pool, returns false when there's nothing to change
+    public boolean apply(){
+        if(!this.hasChanges()) return false;
+
+        List<Map<String, Object>> posts = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) posts.add(Map.of("id", ids[i]));
+
+        pool.newJson.put("posts", posts);
+        pool.transformedValues.remove("posts");
+        return true;
+    }
+    // A single PUT carrying the whole list, skipped entirely when the edits cancel each other out
+    public boolean push() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        if(!this.apply()) return false;
+
+        pool.push();
+        return true;
+    }
+
+    public SzurubooruPool getPool() {
+        return pool;
+    }
+}
@@ -1,77 +1,88 @@
 package jszuru.resources;
 
 import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruAsyncAPI;
+import jszuru.SzurubooruDownloadListener;
 import jszuru.exceptions.SzurubooruException;
 import jszuru.exceptions.SzurubooruHTTPException;
 import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
 
 @SuppressWarnings("unused")
 public class SzurubooruPost extends SzurubooruResource {
     public SzurubooruPost(SzurubooruAPI api, Map<String, Object> initialJson){
         super(api, initialJson);
     }
+    @Override
+    protected Map<String, Object> parsed(Map<String, Object> data) {
+        if(!api.isInternPostTags() || data == null || !(data.get("tags") instanceof List<?> tags) || tags.isEmpty()) return data;
+
+        // Views such as those of a SzurubooruCompactPostList already hold interned tags and are kept as they are
+        List<?> internedTags = api.getTagDictionary().internAll(tags);
+        if(internedTags == tags) return data;
+
+        Map<String, Object> interned = new HashMap<>(data);
+        interned.put("tags", internedTags);
+        return interned;
+    }
     protected SzurubooruTag stringToTag(String value) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
-        SzurubooruTag tag = new SzurubooruTag(api, Map.of("names", List.of(value)));
-        tag.pull(); // Might cause some trouble when converting the name of a tag that is yet to be created
-        return tag;
+        // Might cause some trouble when converting the name of a tag that is yet to be created
+        return api.getTag(value);
     }
 
     @Override
     public List<String> getInstanceUrlParts() {
-        Object id = json.get("id");
-        if(id instanceof Double idDouble){
-            id = idDouble.intValue();
-        }
-        else if(id instanceof Float idFloat){
-            id = idFloat.intValue();
-        }
-
-        return List.of("post", (int)id + "");
+        return List.of("post", getIntValue(json.get("id")) + "");
     }
     @Override
     public List<String> getClassUrlParts() {
         return List.of("posts");
     }
 
+    @Override
+    protected List<Object> cacheKeys() {
+        Object id = json.get("id");
+        return id == null? List.of() : List.of(getIntValue(id));
+    }
+
     @Override
     public List<String> lazyLoadComponents() {
         return List.of("id", "safety", "type", "contentUrl", "flags", "tags", "relations");
     }
 
-    @Override
-    protected Map<String, Function<Object, Object>> getterTransforms() {
-        Function<Object, Object> lambdaTags = (x) -> new SzurubooruTag(api, (Map<String, Object>) x);
-        Function<Object, Object> lambdaRelations = (x) -> new SzurubooruPost(api, (Map<String, Object>) x);
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms = Map.of(
+            "tags", (api, x) -> new SzurubooruTag(api, (Map<String, Object>) x),
+            "relations", (api, x) -> new SzurubooruPost(api, (Map<String, Object>) x)
+    );
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms = Map.of(
+            "tags", (api, x) -> {
+                SzurubooruTag tag = (SzurubooruTag) x;
+                return Map.of(
+                        "names", tag.getNames(),
+                        "category", tag.getCategory()
+                );
+            },
+            "relations", (api, x) -> {
+                SzurubooruPost post = (SzurubooruPost) x;
+                return Map.of("id", post.getId());
+            }
+    );
 
-        return Map.of("tags", lambdaTags,
-                      "relations", lambdaRelations);
+    @Override
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms() {
+        return getterTransforms;
     }
     @Override
-    protected Map<String, Function<Object, Object>> setterTransforms() {
-        Function<Object, Object> lambdaTags = (x) -> {
-            SzurubooruTag tag = (SzurubooruTag) x;
-            return Map.of(
-                    "names", tag.getNames(),
-                    "category", tag.getCategory()
-            );
-        };
-        Function<Object, Object> lambdaRelations = (x) -> {
-            SzurubooruPost post = (SzurubooruPost) x;
-            return Map.of("id", post.getId());
-        };
-
-        return Map.of(
-                "tags", lambdaTags,
-                "relations", lambdaRelations
-        );
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms() {
+        return setterTransforms;
     }
 
     @Override
@@ -100,7 +111,7 @@ public class SzurubooruPost extends SzurubooruResource {
         return ret;
     }
 
-    public void mergeFrom(SzurubooruPost source, boolean replaceContent) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+    protected Map<String, Object> createMergeBody(SzurubooruPost source, boolean replaceContent) throws SzurubooruResourceNotSynchronizedException {
         if(!source.json.containsKey("version") || !source.newJson.isEmpty()){
             throw new SzurubooruResourceNotSynchronizedException("Target post is not synchronized");
         }
@@ -108,37 +119,65 @@ public class SzurubooruPost extends SzurubooruResource {
             throw new SzurubooruResourceNotSynchronizedException("This post is not synchronized");
         }
 
-        Map<String, Object> body = Map.of(
+        return Map.of(
                 "removeVersion", source.json.get("version"),
                 "remove", source.getId(),
                 "mergeToVersion", json.get("version"),
                 "mergeTo", this.getId(),
                 "replaceContent", replaceContent
         );
+    }
+    public void mergeFrom(SzurubooruPost source, boolean replaceContent) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+        Map<String, Object> body = this.createMergeBody(source, replaceContent);
 
         Map<String, Object> data = api.call("POST", List.of("post-merge"), null, body);
         this.updateJson(data, true);
 
-        source.json = new HashMap<>();
+        source.evictFromCache();
+        source.setJson(new HashMap<>());
     }
-    public List<SzurubooruPost> getAround() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
-        List<String> urlParts = new ArrayList<>(this.getInstanceUrlParts());
-        urlParts.add("around");
+    public CompletableFuture<Void> mergeFromAsync(SzurubooruPost source, boolean replaceContent){
+        Map<String, Object> body;
 
-        Map<String, Object> data = api.call("GET", urlParts);
+        try{
+            body = this.createMergeBody(source, replaceContent);
+        } catch (SzurubooruResourceNotSynchronizedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        SzurubooruPost prev = new SzurubooruPost(api, (Map<String, Object>) data.get("prev"));
-        SzurubooruPost next = new SzurubooruPost(api, (Map<String, Object>) data.get("next"));
+        return api.getAsyncApi()
+                .callAsync("POST", List.of("post-merge"), null, body)
+                .thenAccept(data -> {
+                    this.updateJsonAsync(data, true);
+                    source.evictFromCache();
+                    source.setJson(new HashMap<>());
+                });
+    }
+    public CompletableFuture<List<SzurubooruPost>> getAroundAsync(){
+        List<String> urlParts = new ArrayList<>(this.getInstanceUrlParts());
+        urlParts.add("around");
 
-        prev.pull();
-        next.pull();
+        return api.getAsyncApi()
+                .callAsync("GET", urlParts)
+                .thenCompose(data -> {
+                    SzurubooruPost prev = data.get("prev") == null? null : new SzurubooruPost(api, (Map<String, Object>) data.get("prev"));
+                    SzurubooruPost next = data.get("next") == null? null : new SzurubooruPost(api, (Map<String, Object>) data.get("next"));
 
-        return List.of(prev, next);
+                    // Both neighbours are pulled concurrently
+                    return CompletableFuture.allOf(
+                                    prev == null? CompletableFuture.completedFuture(null) : prev.pullAsync(),
+                                    next == null? CompletableFuture.completedFuture(null) : next.pullAsync())
+                            .thenApply(x -> Arrays.asList(prev, next));
+                });
+    }
+    // Either element is null when there's no post in that direction
+    public List<SzurubooruPost> getAround() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return SzurubooruAsyncAPI.await(this.getAroundAsync());
     }
 
     public int getId(){
         try {
-            return ((Double)this.genericGetter("id")).intValue();
+            return getIntValue(this.genericGetter("id"));
         } catch (IOException | SzurubooruException e) {
             e.printStackTrace();
             return -1;
@@ -272,6 +311,33 @@ public class SzurubooruPost extends SzurubooruResource {
         return this;
     }
 
+    protected String getDataUrl(String propertyName) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        try{
+            return this.fileGetter(propertyName);
+        } catch (URISyntaxException e) {
+            throw new IOException("Malformed " + propertyName + " URL", e);
+        }
+    }
+    // The content is checked against the post's checksum, a download to a file resumes an interrupted one
+    public long downloadContent(Path target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return downloadContent(target, null);
+    }
+    public long downloadContent(Path target, SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return api.downloadFile(this.getDataUrl("content"), target, (String) this.genericGetter("checksum"), listener);
+    }
+    public long downloadContent(OutputStream target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return api.downloadFile(this.getDataUrl("content"), target, (String) this.genericGetter("checksum"), null);
+    }
+    public long downloadContent(WritableByteChannel target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return api.downloadFile(this.getDataUrl("content"), target, (String) this.genericGetter("checksum"), null);
+    }
+    public long downloadThumbnail(Path target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return api.downloadFile(this.getDataUrl("thumbnail"), target);
+    }
+    public long downloadThumbnail(OutputStream target) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return api.downloadFile(this.getDataUrl("thumbnail"), target);
+    }
+
     public SzurubooruPost setRating(int rating) throws IOException, SzurubooruHTTPException {
         List<String> urlParts = new ArrayList<>(this.getInstanceUrlParts());
         urlParts.add("score");
@@ -323,7 +389,7 @@ public class SzurubooruPost extends SzurubooruResource {
 
     public int getWidth(){
         try{
-            return ((Double)this.genericGetter("width")).intValue();
+            return getIntValue(this.genericGetter("width"));
         } catch (IOException | SzurubooruException e) {
             e.printStackTrace();
             return -1;
@@ -331,7 +397,7 @@ public class SzurubooruPost extends SzurubooruResource {
     }
     public int getHeight(){
         try{
-            return ((Double)this.genericGetter("height")).intValue();
+            return getIntValue(this.genericGetter("height"));
         } catch (IOException | SzurubooruException e) {
             e.printStackTrace();
             return -1;
@@ -340,7 +406,7 @@ public class SzurubooruPost extends SzurubooruResource {
 
     protected boolean flagGetter(String flagName){
         try{
-            List<String> flagList = (List<String>) this.genericGetter("flags");
+            List<String> flagList = new ArrayList<>((List<String>) this.genericGetter("flags"));
             return flagList.contains(flagName);
         } catch (IOException | SzurubooruException e) {
             e.printStackTrace();
@@ -350,7 +416,7 @@ public class SzurubooruPost extends SzurubooruResource {
     }
     protected boolean flagSetter(String flagName, boolean value) {
         try{
-            List<String> flagList = (List<String>) this.genericGetter("flags");
+            List<String> flagList = new ArrayList<>((List<String>) this.genericGetter("flags"));
 
             if(value && !flagList.contains(flagName)){
                 flagList.add(flagName);
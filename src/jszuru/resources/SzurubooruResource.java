@@ -1,14 +1,22 @@
 package jszuru.resources;
 
 import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruRetryPolicy;
 import jszuru.exceptions.SzurubooruHTTPException;
 import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 @SuppressWarnings("unused")
@@ -16,22 +24,45 @@ public abstract class SzurubooruResource {
     protected SzurubooruAPI api;
     protected Map<String, Object> json;
     protected Map<String, Object> newJson;
+    // Getter results are kept until the underlying JSON changes, so wrapped lists aren't rebuilt on every access
+    protected final Map<String, Object> transformedValues = new ConcurrentHashMap<>();
 
     public SzurubooruResource(SzurubooruAPI api, Map<String, Object> initialJson){
         this.api = api;
-        this.json = initialJson;
+        this.json = this.parsed(initialJson);
         this.newJson = new HashMap<>();
     }
 
+    // Lets resources swap parts of a response for shared instances before keeping it
+    protected Map<String, Object> parsed(Map<String, Object> data){
+        return data;
+    }
+
     public abstract List<String> getInstanceUrlParts();
     public abstract List<String> getClassUrlParts();
 
     public abstract List<String> lazyLoadComponents();
-    protected abstract Map<String, Function<Object, Object>> getterTransforms();
-    protected abstract Map<String, Function<Object, Object>> setterTransforms();
+    protected abstract Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms();
+    protected abstract Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms();
 
     protected abstract Map<String, Object> serialized();
 
+    // Ids under which the resource is registered in the API's resource cache, empty if it can't be cached
+    protected List<Object> cacheKeys(){
+        return List.of();
+    }
+    protected void offerToCache(List<Object> previousKeys){
+        SzurubooruResourceCache cache = api.getResourceCache();
+        if(cache == null) return;
+
+        cache.invalidate(this, previousKeys);
+        cache.offer(this);
+    }
+    protected void evictFromCache(){
+        SzurubooruResourceCache cache = api.getResourceCache();
+        if(cache != null) cache.invalidate(this);
+    }
+
     protected Map<String, Object> copyNewJson(List<String> keysToCopy){
         Map<String, Object> ret = new HashMap<>();
 
@@ -62,12 +93,22 @@ public abstract class SzurubooruResource {
         }
 
         newJson = new HashMap<>();
-        json = data;
+        json = this.parsed(data);
+        transformedValues.clear();
+    }
+
+    protected void updateJsonAsync(Map<String, Object> data, boolean force){
+        try{
+            this.updateJson(data, force);
+        } catch (SzurubooruResourceNotSynchronizedException e) {
+            throw new CompletionException(e);
+        }
     }
 
     public void pull() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         Map<String, Object> data = api.call("GET", this.getInstanceUrlParts());
         this.updateJson(data);
+        this.offerToCache(List.of());
     }
     public void push() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         this.pushGeneric(SzurubooruResource::getInstanceUrlParts,
@@ -79,7 +120,50 @@ public abstract class SzurubooruResource {
 
     protected void pushGeneric(Function<SzurubooruResource, List<String>> putUrlParts,
                                Function<SzurubooruResource, List<String>> postUrlParts) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        SzurubooruRetryPolicy retryPolicy = api.getRetryPolicy();
+
+        for(int attempt = 1; ; attempt++){
+            Map<String, Object> base = json;
+            Map<String, Object> pending = new HashMap<>(newJson);
+            if(retryPolicy != null) retryPolicy.recordPush();
+
+            try{
+                this.pushOnce(putUrlParts, postUrlParts);
+                if(retryPolicy != null && attempt > 1) retryPolicy.recordResolved();
+                return;
+            } catch (SzurubooruHTTPException e) {
+                if(retryPolicy == null || !SzurubooruRetryPolicy.isConflict(e) || base.get("version") == null) throw e;
+
+                retryPolicy.recordConflict();
+                if(attempt >= retryPolicy.getMaxAttempts()){
+                    retryPolicy.recordExhausted();
+                    throw e;
+                }
+            }
+
+            retryPolicy.recordRetry();
+            try{
+                Thread.sleep(retryPolicy.getBackoffMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry a push");
+            }
+
+            this.rebase(retryPolicy, base, pending, api.call("GET", this.getInstanceUrlParts()));
+        }
+    }
+    // Replaces the JSON with the freshly pulled one and merges the pending edits back on top of it
+    protected void rebase(SzurubooruRetryPolicy retryPolicy, Map<String, Object> base, Map<String, Object> pending, Map<String, Object> data){
+        newJson = new HashMap<>(retryPolicy.merge(base, pending, data));
+        json = this.parsed(data);
+        transformedValues.clear();
+
+        this.offerToCache(List.of());
+    }
+    protected void pushOnce(Function<SzurubooruResource, List<String>> putUrlParts,
+                            Function<SzurubooruResource, List<String>> postUrlParts) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         Map<String, Object> body = this.serialized();
+        List<Object> previousKeys = this.cacheKeys();
         Map<String, Object> data;
 
         if(json.containsKey("version") && json.get("version") != null){
@@ -91,10 +175,12 @@ public abstract class SzurubooruResource {
         }
 
         this.updateJson(data, true);
+        this.offerToCache(previousKeys);
     }
     protected void deleteGeneric(Function<SzurubooruResource, List<String>> deleteUrlParts) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         if(json.containsKey("version") && json.get("version") != null){
             Map<String, Object> data = api.call("DELETE", deleteUrlParts.apply(this), null, Map.of("version", json.get("version")));
+            this.evictFromCache();
             this.updateJson(data, true);
         }
         else{
@@ -102,31 +188,127 @@ public abstract class SzurubooruResource {
         }
     }
 
+    public CompletableFuture<Void> pullAsync(){
+        return api.getAsyncApi()
+                .callAsync("GET", this.getInstanceUrlParts())
+                .thenAccept(data -> {
+                    this.updateJsonAsync(data, false);
+                    this.offerToCache(List.of());
+                });
+    }
+    public CompletableFuture<Void> pushAsync(){
+        return this.pushGenericAsync(SzurubooruResource::getInstanceUrlParts,
+                                     SzurubooruResource::getClassUrlParts);
+    }
+    public CompletableFuture<Void> deleteAsync(){
+        return this.deleteGenericAsync(SzurubooruResource::getInstanceUrlParts);
+    }
+
+    protected CompletableFuture<Void> pushGenericAsync(Function<SzurubooruResource, List<String>> putUrlParts,
+                                                       Function<SzurubooruResource, List<String>> postUrlParts){
+        return this.pushGenericAsync(putUrlParts, postUrlParts, 1);
+    }
+    protected CompletableFuture<Void> pushGenericAsync(Function<SzurubooruResource, List<String>> putUrlParts,
+                                                       Function<SzurubooruResource, List<String>> postUrlParts,
+                                                       int attempt){
+        SzurubooruRetryPolicy retryPolicy = api.getRetryPolicy();
+        Map<String, Object> base = json;
+        Map<String, Object> pending = new HashMap<>(newJson);
+        if(retryPolicy != null) retryPolicy.recordPush();
+
+        return this.pushOnceAsync(putUrlParts, postUrlParts).handle((x, e) -> {
+            if(e == null){
+                if(retryPolicy != null && attempt > 1) retryPolicy.recordResolved();
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            Throwable cause = e;
+            while(cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+
+            if(retryPolicy == null || !SzurubooruRetryPolicy.isConflict(cause) || base.get("version") == null){
+                return CompletableFuture.<Void>failedFuture(cause);
+            }
+
+            retryPolicy.recordConflict();
+            if(attempt >= retryPolicy.getMaxAttempts()){
+                retryPolicy.recordExhausted();
+                return CompletableFuture.<Void>failedFuture(cause);
+            }
+
+            // The backoff is waited on a timer rather than by parking a thread
+            retryPolicy.recordRetry();
+            Executor delayed = CompletableFuture.delayedExecutor(retryPolicy.getBackoffMillis(attempt), TimeUnit.MILLISECONDS);
+
+            return CompletableFuture.runAsync(() -> {}, delayed)
+                    .thenCompose(y -> api.getAsyncApi().callAsync("GET", this.getInstanceUrlParts()))
+                    .thenCompose(data -> {
+                        this.rebase(retryPolicy, base, pending, data);
+                        return this.pushGenericAsync(putUrlParts, postUrlParts, attempt + 1);
+                    });
+        }).thenCompose(x -> x);
+    }
+    protected CompletableFuture<Void> pushOnceAsync(Function<SzurubooruResource, List<String>> putUrlParts,
+                                                    Function<SzurubooruResource, List<String>> postUrlParts){
+        Map<String, Object> body = this.serialized();
+        List<Object> previousKeys = this.cacheKeys();
+        CompletableFuture<Map<String, Object>> data;
+
+        if(json.containsKey("version") && json.get("version") != null){
+            body.put("version", json.get("version"));
+            data = api.getAsyncApi().callAsync("PUT", putUrlParts.apply(this), null, body);
+        }
+        else{
+            data = api.getAsyncApi().callAsync("POST", postUrlParts.apply(this), null, body);
+        }
+
+        return data.thenAccept(x -> {
+            this.updateJsonAsync(x, true);
+            this.offerToCache(previousKeys);
+        });
+    }
+    protected CompletableFuture<Void> deleteGenericAsync(Function<SzurubooruResource, List<String>> deleteUrlParts){
+        if(json.containsKey("version") && json.get("version") != null){
+            return api.getAsyncApi()
+                    .callAsync("DELETE", deleteUrlParts.apply(this), null, Map.of("version", json.get("version")))
+                    .thenAccept(x -> {
+                        this.evictFromCache();
+                        this.updateJsonAsync(x, true);
+                    });
+        }
+
+        return CompletableFuture.failedFuture(new SzurubooruResourceNotSynchronizedException("Missing version in resource " + this));
+    }
+
     public boolean isSynchronized(){
         return !newJson.isEmpty();
     }
 
-    public static Object applyTransforms(Map<String, Function<Object, Object>> transforms, String propertyName, Object propertyValue){
+    public static Object applyTransforms(SzurubooruAPI api, Map<String, BiFunction<SzurubooruAPI, Object, Object>> transforms, String propertyName, Object propertyValue){
         if(propertyValue == null) return null;
         if(propertyValue instanceof List<?> list){
-            return list.stream().map(x -> applyTransforms(transforms, propertyName, x)).toList();
+            return list.stream().map(x -> applyTransforms(api, transforms, propertyName, x)).toList();
         }
         if(transforms.containsKey(propertyName)){
-            return transforms.get(propertyName).apply(propertyValue);//????
+            return transforms.get(propertyName).apply(api, propertyValue);
         }
 
         return propertyValue;
     }
+    protected Object transformedValue(String propertyName, Object propertyValue){
+        if(propertyValue == null) return null;
+
+        return transformedValues.computeIfAbsent(propertyName, x -> applyTransforms(api, this.getterTransforms(), x, propertyValue));
+    }
 
     protected Object genericGetter(String propertyName) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         return genericGetter(propertyName, true);
     }
     protected Object genericGetter(String propertyName, boolean dynamicRefresh) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
         if(newJson.containsKey(propertyName)){
-            return applyTransforms(this.getterTransforms(), propertyName, newJson.get(propertyName));
+            return this.transformedValue(propertyName, newJson.get(propertyName));
         }
         if(json.containsKey(propertyName)){
-            return applyTransforms(this.getterTransforms(), propertyName, json.get(propertyName));
+            return this.transformedValue(propertyName, json.get(propertyName));
         }
         if(dynamicRefresh){
             this.pull();
@@ -145,7 +327,8 @@ public abstract class SzurubooruResource {
                 throw new IllegalArgumentException(propertyName + " must be an iterable");
             }
 
-            newJson.put(propertyName, applyTransforms(setterTransforms(), propertyName, propertyValue));
+            newJson.put(propertyName, applyTransforms(api, this.setterTransforms(), propertyName, propertyValue));
+            transformedValues.remove(propertyName);
             return;
         }
 
@@ -205,6 +388,7 @@ public abstract class SzurubooruResource {
     }
     public SzurubooruResource setJson(Map<String, Object> json) {
         this.json = json;
+        transformedValues.clear();
         return this;
     }
 
@@ -213,12 +397,13 @@ public abstract class SzurubooruResource {
     }
     public SzurubooruResource setNewJson(Map<String, Object> newJson) {
         this.newJson = newJson;
+        transformedValues.clear();
         return this;
     }
 
     public static int getIntValue(Object n){
-        if(n instanceof Double d) return d.intValue();
-        if(n instanceof Float f) return f.intValue();
+        if(n instanceof Integer i) return i;
+        if(n instanceof Number number) return number.intValue();
         if(n instanceof String s) return Integer.parseInt(s);
 
         return (int) n;
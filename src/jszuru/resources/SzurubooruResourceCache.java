@@ -0,0 +1,144 @@
+package jszuru.resources;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unused")
+public class SzurubooruResourceCache {
+    protected record Key(Class<?> type, Object id){}
+    protected record Entry(SzurubooruResource resource, long loadedAt){}
+
+    private final int maxSize;
+    private final long timeToLive;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SzurubooruResourceCache(int maxSize, Duration timeToLive){
+        if(maxSize <= 0) throw new IllegalArgumentException("Max size must be positive");
+        if(timeToLive.isNegative() || timeToLive.isZero()) throw new IllegalArgumentException("Time to live must be positive");
+
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive.toNanos();
+
+        // Access order turns the map into an LRU list: the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if(size() <= SzurubooruResourceCache.this.maxSize) return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    protected boolean isExpired(Entry entry, long now){
+        return now - entry.loadedAt() > timeToLive;
+    }
+    protected static int getVersion(SzurubooruResource resource){
+        Object version = resource.getJson().get("version");
+        return version == null? -1 : SzurubooruResource.getIntValue(version);
+    }
+
+    public synchronized <T extends SzurubooruResource> T get(Class<T> type, Object id){
+        Key key = new Key(type, id);
+        Entry entry = entries.get(key);
+
+        if(entry == null){
+            misses++;
+            return null;
+        }
+        if(isExpired(entry, System.nanoTime())){
+            entries.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return type.cast(entry.resource());
+    }
+
+    // Registers a freshly fetched resource and returns the instance callers should share.
+    // If another instance is already cached it is kept, taking over the newer JSON unless it has pending changes.
+    // Resources without a version, such as search results restricted to a few fields, are partial and never cached
+    public synchronized <T extends SzurubooruResource> T offer(T resource){
+        List<Object> ids = resource.cacheKeys();
+        if(ids.isEmpty() || getVersion(resource) < 0) return resource;
+
+        long now = System.nanoTime();
+        T canonical = resource;
+
+        for(Object id:ids){
+            Entry entry = entries.get(new Key(resource.getClass(), id));
+            if(entry == null || isExpired(entry, now) || entry.resource() == resource) continue;
+
+            T cached = (T) entry.resource();
+            if(getVersion(resource) >= getVersion(cached) && cached.getNewJson().isEmpty()){
+                cached.setJson(resource.getJson());
+            }
+
+            canonical = cached;
+            break;
+        }
+
+        for(Object id:ids){
+            entries.put(new Key(resource.getClass(), id), new Entry(canonical, now));
+        }
+
+        return canonical;
+    }
+
+    // Only the keys still pointing to this very instance are dropped, so a merge target that took over
+    // the names of the source keeps its entries
+    public synchronized void invalidate(SzurubooruResource resource, List<Object> ids){
+        for(Object id:ids){
+            Key key = new Key(resource.getClass(), id);
+            Entry entry = entries.get(key);
+
+            if(entry != null && entry.resource() == resource) entries.remove(key);
+        }
+    }
+    public void invalidate(SzurubooruResource resource){
+        this.invalidate(resource, resource.cacheKeys());
+    }
+    public synchronized void invalidate(Class<? extends SzurubooruResource> type, Object id){
+        entries.remove(new Key(type, id));
+    }
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLive);
+    }
+    public synchronized int size(){
+        return entries.size();
+    }
+    public synchronized long getHits() {
+        return hits;
+    }
+    public synchronized long getMisses() {
+        return misses;
+    }
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    public synchronized double getHitRatio(){
+        long lookups = hits + misses;
+        return lookups == 0? 0 : (double) hits / lookups;
+    }
+    public synchronized void resetStatistics(){
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
@@ -0,0 +1,37 @@
+package jszuru.resources;
+
+import jszuru.SzurubooruAPI;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+@SuppressWarnings("unused")
+public final class SzurubooruResourceFactory {
+    private static final Map<Class<?>, BiFunction<SzurubooruAPI, Map<String, Object>, ?>> factories = new ConcurrentHashMap<>();
+
+    static {
+        register(SzurubooruPost.class, SzurubooruPost::new);
+        register(SzurubooruTag.class, SzurubooruTag::new);
+        register(SzurubooruPool.class, SzurubooruPool::new);
+        register(SzurubooruTagCategory.class, SzurubooruTagCategory::new);
+        register(SzurubooruPoolCategory.class, SzurubooruPoolCategory::new);
+    }
+
+    private SzurubooruResourceFactory(){}
+
+    public static <T extends SzurubooruResource> void register(Class<T> resourceClass, BiFunction<SzurubooruAPI, Map<String, Object>, T> factory){
+        factories.put(resourceClass, factory);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends SzurubooruResource> BiFunction<SzurubooruAPI, Map<String, Object>, T> get(Class<T> resourceClass){
+        BiFunction<SzurubooruAPI, Map<String, Object>, ?> factory = factories.get(resourceClass);
+        if(factory == null) throw new IllegalArgumentException("No factory registered for " + resourceClass.getName());
+
+        return (BiFunction<SzurubooruAPI, Map<String, Object>, T>) factory;
+    }
+    public static <T extends SzurubooruResource> T create(Class<T> resourceClass, SzurubooruAPI api, Map<String, Object> json){
+        return get(resourceClass).apply(api, json);
+    }
+}
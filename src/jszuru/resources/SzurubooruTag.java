@@ -7,7 +7,8 @@ import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
 
 @SuppressWarnings("unused")
 public class SzurubooruTag extends SzurubooruResource{
@@ -20,25 +21,25 @@ public class SzurubooruTag extends SzurubooruResource{
         return List.of("tags");
     }
 
+    @Override
+    protected List<Object> cacheKeys() {
+        Object names = json.get("names");
+        return names == null? List.of() : List.copyOf((List<Object>) names);
+    }
+
     @Override
     public List<String> lazyLoadComponents() {
         return List.of("names", "category", "usages");
     }
 
-    @Override
-    protected Map<String, Function<Object, Object>> getterTransforms() {
-        Map<String, Function<Object, Object>> map = new HashMap<>();
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms = new HashMap<>();
+    private static final Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms = new HashMap<>();
 
-        map.put("implications", (x) -> new SzurubooruTag(api, (Map<String, Object>)x));
-        map.put("suggestions", (x) -> new SzurubooruTag(api, (Map<String, Object>)x));
+    static {
+        getterTransforms.put("implications", (api, x) -> new SzurubooruTag(api, (Map<String, Object>)x));
+        getterTransforms.put("suggestions", (api, x) -> new SzurubooruTag(api, (Map<String, Object>)x));
 
-        return map;
-    }
-    @Override
-    protected Map<String, Function<Object, Object>> setterTransforms() {
-        Map<String, Function<Object, Object>> map = new HashMap<>();
-
-        Function<Object, Object> lambda = (x) -> {
+        BiFunction<SzurubooruAPI, Object, Object> lambda = (api, x) -> {
             Map<String, Object> itemMap = new HashMap<>();
             SzurubooruTag tag = (SzurubooruTag)x;
 
@@ -48,10 +49,17 @@ public class SzurubooruTag extends SzurubooruResource{
             return itemMap;
         };
 
-        map.put("implications", lambda);
-        map.put("suggestions", lambda);
+        setterTransforms.put("implications", lambda);
+        setterTransforms.put("suggestions", lambda);
+    }
 
-        return map;
+    @Override
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> getterTransforms() {
+        return getterTransforms;
+    }
+    @Override
+    protected Map<String, BiFunction<SzurubooruAPI, Object, Object>> setterTransforms() {
+        return setterTransforms;
     }
 
     @Override
@@ -70,7 +78,40 @@ public class SzurubooruTag extends SzurubooruResource{
         return ret;
     }
 
-    public void mergeFrom(SzurubooruTag source, boolean addAsAlias) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+    // The API's tag dictionary is brought up to date before the listeners hear about it
+    protected void pushed(List<String> previousNames){
+        api.getTagDictionary().update(previousNames, json);
+        api.notifyTagPushed(this);
+    }
+    protected void deleted(List<String> names){
+        api.getTagDictionary().remove(names);
+        api.notifyTagDeleted(this, names);
+    }
+
+    @Override
+    public void push() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        List<String> previousNames = (List<String>) json.get("names");
+        super.push();
+        this.pushed(previousNames);
+    }
+    @Override
+    public void delete() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        List<String> names = this.getNames();
+        super.delete();
+        this.deleted(names);
+    }
+    @Override
+    public CompletableFuture<Void> pushAsync() {
+        List<String> previousNames = (List<String>) json.get("names");
+        return super.pushAsync().thenRun(() -> this.pushed(previousNames));
+    }
+    @Override
+    public CompletableFuture<Void> deleteAsync() {
+        List<String> names = this.getNames();
+        return super.deleteAsync().thenRun(() -> this.deleted(names));
+    }
+
+    protected Map<String, Object> createMergeBody(SzurubooruTag source) throws SzurubooruResourceNotSynchronizedException {
         if(!source.json.containsKey("version") || !source.newJson.isEmpty()){
             throw new SzurubooruResourceNotSynchronizedException("Target tag is not synchronized");
         }
@@ -78,31 +119,81 @@ public class SzurubooruTag extends SzurubooruResource{
             throw new SzurubooruResourceNotSynchronizedException("This tag is not synchronized");
         }
 
-        Map<String, Object> body = Map.of(
+        return Map.of(
                 "removeVersion", source.json.get("version"),
                 "remove", source.getPrimaryName(),
                 "mergeToVersion", json.get("version"),
                 "mergeTo", this.getPrimaryName()
         );
+    }
+    public void mergeFrom(SzurubooruTag source, boolean addAsAlias) throws SzurubooruResourceNotSynchronizedException, IOException, SzurubooruHTTPException {
+        Map<String, Object> body = this.createMergeBody(source);
 
+        List<String> sourceNames = source.getNames();
         Map<String, Object> data = api.call("POST", List.of("tag-merge"), null, body);
         this.updateJson(data, true);
 
-        if(addAsAlias){
-            List<String> names = this.getNames();
-            names.addAll(source.getNames());
-            this.setNames(names
-                .stream()
-                .distinct()
-                .toList());
-            this.push();
+        // The source's names are freed first, so the target can take them over as aliases
+        source.evictFromCache();
+        source.setJson(new HashMap<>());
+        source.deleted(sourceNames);
+
+        if(!addAsAlias){
+            this.pushed(null);
+            return;
+        }
+
+        List<String> names = this.getNames();
+        names.addAll(sourceNames);
+        this.setNames(names
+            .stream()
+            .distinct()
+            .toList());
+        this.push();
+    }
+    public CompletableFuture<Void> mergeFromAsync(SzurubooruTag source, boolean addAsAlias){
+        Map<String, Object> body;
+
+        try{
+            body = this.createMergeBody(source);
+        } catch (SzurubooruResourceNotSynchronizedException e) {
+            return CompletableFuture.failedFuture(e);
         }
 
-        source.json = new HashMap<>();
+        return api.getAsyncApi()
+                .callAsync("POST", List.of("tag-merge"), null, body)
+                .thenCompose(data -> {
+                    this.updateJsonAsync(data, true);
+                    List<String> sourceNames = source.getNames();
+                    source.evictFromCache();
+                    source.setJson(new HashMap<>());
+                    source.deleted(sourceNames);
+
+                    if(!addAsAlias){
+                        this.pushed(null);
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    List<String> names = this.getNames();
+                    names.addAll(sourceNames);
+                    this.setNames(names
+                        .stream()
+                        .distinct()
+                        .toList());
+                    return this.pushAsync();
+                });
     }
     public List<SzurubooruTag> getSiblings() throws IOException, SzurubooruHTTPException {
         Map<String, Object> data = api.call("GET", List.of("tag-siblings", this.getPrimaryName()));
 
+        return parseSiblings(data);
+    }
+    public CompletableFuture<List<SzurubooruTag>> getSiblingsAsync(){
+        return api.getAsyncApi()
+                .callAsync("GET", List.of("tag-siblings", this.getPrimaryName()))
+                .thenApply(this::parseSiblings);
+    }
+    protected List<SzurubooruTag> parseSiblings(Map<String, Object> data){
         if(data.get("results") instanceof List<?> results){
             return results
                     .stream()
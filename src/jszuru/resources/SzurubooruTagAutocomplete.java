@@ -0,0 +1,251 @@
+package jszuru.resources;
+
+import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruTagListener;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.search.SzurubooruSearch;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// Prefix index over every tag name and alias, answering completions ranked by usage without calling the server.
+// Names live in one sorted array, so a prefix is a contiguous range found with two binary searches. Tags added
+// later go to a small side map, merged into the arrays once it grows too large
+@SuppressWarnings("unused")
+public class SzurubooruTagAutocomplete implements SzurubooruTagListener {
+    public static final List<String> FIELDS = List.of("names", "category", "usages");
+
+    protected static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    private final SzurubooruAPI api;
+    private final SzurubooruTagDictionary dictionary;
+
+    // Lowercased names, the dictionary id of their tag and its usage count, in name order
+    private String[] names = new String[0];
+    private int[] ids = new int[0];
+    private int[] usages = new int[0];
+
+    private final TreeMap<String, Integer> pending = new TreeMap<>();
+    private final Set<String> removedNames = new HashSet<>();
+    // The names each tag is indexed under, the dictionary may already know about a rename by the time it's seen here
+    private final Map<Integer, List<String>> namesById = new HashMap<>();
+    private LocalDate loadedOn = null;
+    private long fullyLoadedAt = 0;
+    private Duration fullReloadInterval = Duration.ofHours(1);
+
+    public SzurubooruTagAutocomplete(SzurubooruAPI api){
+        this.api = api;
+        this.dictionary = api.getTagDictionary();
+    }
+
+    // Usage counts change when posts get tagged, which doesn't count as an edit of the tag, so only a full load
+    // updates the ranking of tags that weren't edited. refresh() falls back to one once the last is this old
+    public synchronized SzurubooruTagAutocomplete setFullReloadInterval(Duration fullReloadInterval) {
+        if(fullReloadInterval.isNegative()) throw new IllegalArgumentException("Full reload interval can't be negative");
+
+        this.fullReloadInterval = fullReloadInterval;
+        return this;
+    }
+
+    protected static String normalize(String name){
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public void load(int pageSize) throws IOException, SzurubooruHTTPException {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long now = System.nanoTime();
+        List<Map<String, Object>> tags = new ArrayList<>();
+        SzurubooruSearch.forEachJson(api, null, List.of("tags"), FIELDS, pageSize, tags::add);
+
+        synchronized(this){
+            pending.clear();
+            removedNames.clear();
+            namesById.clear();
+            tags.forEach(this::update);
+            this.rebuild();
+            loadedOn = today;
+            fullyLoadedAt = now;
+        }
+    }
+    // Picks up the tags edited since the last load or refresh. Edits are only searchable by day,
+    // so the tags of the last day are scanned again. Reloads everything once the full reload interval has passed
+    public void refresh(int pageSize) throws IOException, SzurubooruHTTPException {
+        LocalDate since;
+        boolean stale;
+        synchronized(this){
+            since = loadedOn;
+            stale = System.nanoTime() - fullyLoadedAt >= fullReloadInterval.toNanos();
+        }
+        if(since == null || stale){
+            this.load(pageSize);
+            return;
+        }
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        SzurubooruSearch.forEachJson(api, "edit-time:" + since + "..", List.of("tags"), FIELDS, pageSize, this::update);
+
+        synchronized(this){
+            loadedOn = today;
+        }
+    }
+
+    protected int indexOf(String name){
+        int index = Arrays.binarySearch(names, name);
+        return index >= 0 && !removedNames.contains(name)? index : -1;
+    }
+    public synchronized void update(Map<String, Object> tagJson){
+        List<String> newNames = (List<String>) tagJson.get("names");
+        if(newNames == null || newNames.isEmpty()) return;
+
+        int id = dictionary.intern(tagJson);
+        int usage = dictionary.getUsages(id);
+
+        // Aliases dropped by a rename stop matching
+        Set<String> current = new LinkedHashSet<>();
+        newNames.forEach(x -> current.add(normalize(x)));
+        for(String key:namesById.getOrDefault(id, List.of())){
+            if(current.contains(key)) continue;
+
+            pending.remove(key);
+            if(Arrays.binarySearch(names, key) >= 0) removedNames.add(key);
+        }
+        namesById.put(id, List.copyOf(current));
+
+        for(String key:current){
+            int index = Arrays.binarySearch(names, key);
+            if(index >= 0 && ids[index] == id){
+                usages[index] = usage;
+                removedNames.remove(key);
+            }
+            else{
+                if(index >= 0) removedNames.add(key);
+                pending.put(key, id);
+            }
+        }
+
+        if(pending.size() > Math.max(MIN_REBUILD_THRESHOLD, names.length / 16)) this.rebuild();
+    }
+    public synchronized void remove(Collection<String> tagNames){
+        for(String name:tagNames){
+            String key = normalize(name);
+
+            Integer id = pending.remove(key);
+            int index = Arrays.binarySearch(names, key);
+            if(index >= 0){
+                if(!removedNames.contains(key) && id == null) id = ids[index];
+                removedNames.add(key);
+            }
+
+            if(id != null){
+                List<String> remaining = new ArrayList<>(namesById.getOrDefault(id, List.of()));
+                remaining.remove(key);
+
+                if(remaining.isEmpty()) namesById.remove(id);
+                else namesById.put(id, List.copyOf(remaining));
+            }
+        }
+    }
+    // Merges the side map into the sorted arrays
+    protected void rebuild(){
+        int size = names.length - removedNames.size() + pending.size();
+        String[] newNames = new String[size];
+        int[] newIds = new int[size];
+        int[] newUsages = new int[size];
+
+        Iterator<Map.Entry<String, Integer>> added = pending.entrySet().iterator();
+        Map.Entry<String, Integer> next = added.hasNext()? added.next() : null;
+        int n = 0;
+
+        for(int i = 0; i <= names.length; i++){
+            while(next != null && (i == names.length || next.getKey().compareTo(names[i]) < 0)){
+                newNames[n] = next.getKey();
+                newIds[n] = next.getValue();
+                newUsages[n++] = dictionary.getUsages(next.getValue());
+                next = added.hasNext()? added.next() : null;
+            }
+            if(i == names.length || removedNames.contains(names[i])) continue;
+
+            newNames[n] = names[i];
+            newIds[n] = ids[i];
+            newUsages[n++] = usages[i];
+        }
+
+        names = Arrays.copyOf(newNames, n);
+        ids = Arrays.copyOf(newIds, n);
+        usages = Arrays.copyOf(newUsages, n);
+        pending.clear();
+        removedNames.clear();
+    }
+
+    protected static int lowerBound(String[] array, String key){
+        int low = 0, high = array.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(array[middle].compareTo(key) < 0) low = middle + 1;
+            else high = middle;
+        }
+
+        return low;
+    }
+
+    // Dictionary ids of the k most used tags having a name or alias starting with the prefix, most used first
+    public synchronized int[] completeIds(String prefix, int k){
+        if(k <= 0) return new int[0];
+
+        String key = normalize(prefix);
+        // Min-heap on usage holding the best k so far, aliases of a tag sharing its usage so it enters at most once
+        PriorityQueue<int[]> best = new PriorityQueue<>(k + 1, (a, b) -> a[1] != b[1]? Integer.compare(a[1], b[1]) : Integer.compare(b[0], a[0]));
+        Set<Integer> inHeap = new HashSet<>();
+
+        for(int i = lowerBound(names, key); i < names.length && names[i].startsWith(key); i++){
+            if(!removedNames.isEmpty() && removedNames.contains(names[i])) continue;
+            this.offer(best, inHeap, ids[i], usages[i], k);
+        }
+        for(Map.Entry<String, Integer> entry:pending.tailMap(key).entrySet()){
+            if(!entry.getKey().startsWith(key)) break;
+            this.offer(best, inHeap, entry.getValue(), dictionary.getUsages(entry.getValue()), k);
+        }
+
+        int[] result = new int[best.size()];
+        for(int i = result.length - 1; i >= 0; i--) result[i] = best.poll()[0];
+
+        return result;
+    }
+    protected void offer(PriorityQueue<int[]> best, Set<Integer> inHeap, int id, int usage, int k){
+        if(inHeap.contains(id)) return;
+        if(best.size() == k){
+            if(best.peek()[1] >= usage) return;
+            inHeap.remove(best.poll()[0]);
+        }
+
+        best.add(new int[]{id, usage});
+        inHeap.add(id);
+    }
+    public List<String> complete(String prefix, int k){
+        return Arrays.stream(this.completeIds(prefix, k))
+                .mapToObj(dictionary::getName)
+                .toList();
+    }
+    // Backed by the tag dictionary's shared views
+    public List<SzurubooruTag> completeTags(String prefix, int k){
+        return Arrays.stream(this.completeIds(prefix, k))
+                .mapToObj(dictionary::getTag)
+                .toList();
+    }
+
+    public synchronized int size(){
+        return names.length - removedNames.size() + pending.size();
+    }
+
+    @Override
+    public void tagPushed(SzurubooruTag tag) {
+        this.update(tag.getJson());
+    }
+    @Override
+    public void tagDeleted(SzurubooruTag tag, List<String> names) {
+        this.remove(names);
+    }
+}
@@ -0,0 +1,314 @@
+package jszuru.resources;
+
+import jszuru.SzurubooruAPI;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Assigns tags a compact int id, so they can be referenced, compared and intersected as ints. Only the tags handed
+// to it are interned: compact post lists, the tag graph and autocomplete, and post tags when the API was built with
+// setInternPostTags(true). Entries are kept until clear(), so a long-running client interning everything should clear
+// it from time to time
+@SuppressWarnings("unused")
+public class SzurubooruTagDictionary {
+    protected static class TagEntry {
+        protected List<String> names;
+        protected String category;
+        protected int usages;
+        protected TagJson json = null;
+
+        protected TagEntry(List<String> names, String category, int usages){
+            this.names = names;
+            this.category = category;
+            this.usages = usages;
+        }
+    }
+
+    // Always reflects the latest names, category and usages seen for the tag. Shared by every post holding the tag,
+    // so it's read-only: tags backed by it keep their edits to themselves like any other tag
+    protected final class TagJson extends AbstractMap<String, Object> {
+        protected final int id;
+        protected final TagEntry entry;
+
+        protected TagJson(int id, TagEntry entry){
+            this.id = id;
+            this.entry = entry;
+        }
+
+        // False once the dictionary has been cleared
+        protected boolean isInterned(SzurubooruTagDictionary dictionary){
+            synchronized(SzurubooruTagDictionary.this){
+                return dictionary == SzurubooruTagDictionary.this && id < entries.size() && entries.get(id) == entry;
+            }
+        }
+
+        @Override
+        public Object get(Object key) {
+            synchronized(SzurubooruTagDictionary.this){
+                if("names".equals(key)) return entry.names;
+                if("category".equals(key)) return entry.category;
+                if("usages".equals(key)) return entry.usages;
+                return null;
+            }
+        }
+        @Override
+        public boolean containsKey(Object key) {
+            return "names".equals(key) || "category".equals(key) || "usages".equals(key);
+        }
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            Map<String, Object> snapshot = new HashMap<>();
+            for(String key:List.of("names", "category", "usages")) snapshot.put(key, this.get(key));
+
+            return Collections.unmodifiableMap(snapshot).entrySet();
+        }
+    }
+
+    private final SzurubooruAPI api;
+
+    // Tag names are case-insensitive on the server, every current name of a tag maps to its id
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final List<TagEntry> entries = new ArrayList<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final List<String> categories = new ArrayList<>();
+
+    public SzurubooruTagDictionary(SzurubooruAPI api){
+        this.api = api;
+    }
+
+    protected static String normalize(String name){
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized int internCategory(String category){
+        if(category == null) return -1;
+
+        return categoryIds.computeIfAbsent(category, x -> {
+            categories.add(x);
+            return categories.size() - 1;
+        });
+    }
+    // Entries share a single instance of each category name
+    protected String canonicalCategory(String category){
+        return this.getCategory(this.internCategory(category));
+    }
+    public synchronized String getCategory(int categoryId){
+        return categoryId < 0? null : categories.get(categoryId);
+    }
+
+    public int intern(Map<String, Object> tagJson){
+        if(tagJson instanceof TagJson view && view.isInterned(this)) return view.id;
+
+        return this.intern(null, tagJson);
+    }
+    public synchronized int intern(List<String> names, String category, int usages){
+        return this.intern(this.findId(names), names, category, usages);
+    }
+    // After a rename the tag is found by the names it had before, so it keeps its id
+    public synchronized int intern(List<String> previousNames, Map<String, Object> tagJson){
+        List<String> names = (List<String>) tagJson.get("names");
+        Object category = tagJson.get("category");
+        Object usages = tagJson.get("usages");
+
+        Integer id = previousNames == null? null : this.findId(previousNames);
+        if(id == null) id = this.findId(names);
+
+        return this.intern(id,
+                           names,
+                           category == null? null : category.toString(),
+                           usages == null? -1 : SzurubooruResource.getIntValue(usages));
+    }
+    protected Integer findId(List<String> names){
+        for(String name:names){
+            Integer id = idsByName.get(normalize(name));
+            if(id != null) return id;
+        }
+
+        return null;
+    }
+    protected int intern(Integer id, List<String> names, String category, int usages){
+        if(id == null){
+            entries.add(new TagEntry(List.copyOf(names), this.canonicalCategory(category), Math.max(usages, 0)));
+            id = entries.size() - 1;
+        }
+        else{
+            // Later responses may carry new aliases, a new category or a fresh usage count
+            TagEntry entry = entries.get(id);
+
+            if(!entry.names.equals(names)){
+                Set<String> kept = new HashSet<>();
+                names.forEach(x -> kept.add(normalize(x)));
+
+                // Dropped aliases are free to name another tag
+                for(String name:entry.names){
+                    if(!kept.contains(normalize(name))) idsByName.remove(normalize(name), id);
+                }
+
+                entry.names = List.copyOf(names);
+            }
+            if(category != null && !category.equals(entry.category)){
+                entry.category = this.canonicalCategory(category);
+            }
+            if(usages >= 0) entry.usages = usages;
+        }
+
+        for(String name:names){
+            idsByName.put(normalize(name), id);
+        }
+
+        return id;
+    }
+    // Brings a tag that was already interned up to date, without interning tags seen for the first time.
+    // After a rename the tag is found by the names it had before, so it keeps its id
+    public synchronized void update(List<String> previousNames, Map<String, Object> tagJson){
+        List<String> names = (List<String>) tagJson.get("names");
+        if(names == null) return;
+
+        Integer id = previousNames == null? null : this.findId(previousNames);
+        if(id == null) id = this.findId(names);
+
+        if(id != null) this.intern(previousNames, tagJson);
+    }
+    // Forgets the names of a deleted tag. Its id stays valid for whoever still holds it
+    public synchronized void remove(List<String> names){
+        for(String name:names){
+            idsByName.remove(normalize(name));
+        }
+    }
+
+    // Returns -1 for names that haven't been seen yet
+    public int getId(String name){
+        Integer id = idsByName.get(normalize(name));
+        return id == null? -1 : id;
+    }
+    public boolean contains(String name){
+        return idsByName.containsKey(normalize(name));
+    }
+    public synchronized String getName(int id){
+        return entries.get(id).names.get(0);
+    }
+    public synchronized List<String> getNames(int id){
+        return entries.get(id).names;
+    }
+    public synchronized String getCategoryName(int id){
+        return entries.get(id).category;
+    }
+    public synchronized int getUsages(int id){
+        return entries.get(id).usages;
+    }
+    // Read-only and shared, the same instance is handed out for an id until the dictionary is cleared
+    public Map<String, Object> getJson(int id){
+        return this.getView(id);
+    }
+    protected synchronized TagJson getView(int id){
+        TagEntry entry = entries.get(id);
+        if(entry.json == null) entry.json = new TagJson(id, entry);
+
+        return entry.json;
+    }
+    // A new tag every time, backed by the shared view until it's edited or pulled
+    public SzurubooruTag getTag(int id){
+        return new SzurubooruTag(api, this.getView(id));
+    }
+    public SzurubooruTag getTag(Map<String, Object> tagJson){
+        return this.getTag(this.intern(tagJson));
+    }
+    // Replaces the tags of a parsed post with the shared views, so the post doesn't keep its own copies.
+    // Returns the given list itself when it only holds views of this dictionary already
+    public List<?> internAll(List<?> tags){
+        boolean allInterned = true;
+        for(Object tag:tags){
+            if(!(tag instanceof TagJson view && view.isInterned(this))){
+                allInterned = false;
+                break;
+            }
+        }
+        if(allInterned) return tags;
+
+        List<Object> interned = new ArrayList<>(tags.size());
+        for(Object tag:tags){
+            interned.add(tag instanceof Map<?, ?> tagJson? this.getJson(this.intern((Map<String, Object>) tagJson)) : tag);
+        }
+
+        return interned;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+    // Ids handed out before clearing, e.g. those held by a SzurubooruCompactPostList, become meaningless.
+    // Views and tags handed out keep what they had, but aren't updated anymore. Also frees the memory of every tag
+    // interned so far
+    public synchronized void clear(){
+        idsByName.clear();
+        entries.clear();
+        categoryIds.clear();
+        categories.clear();
+    }
+
+    // Sorted, duplicate-free id arrays, the representation used by the set operations below
+    public int[] toIdSet(Collection<String> names){
+        return names.stream()
+                .mapToInt(this::getId)
+                .filter(x -> x >= 0)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+    public static int[] toIdSet(int[] ids){
+        return Arrays.stream(ids).sorted().distinct().toArray();
+    }
+    public static boolean contains(int[] idSet, int id){
+        return Arrays.binarySearch(idSet, id) >= 0;
+    }
+    public static boolean containsAll(int[] idSet, int[] other){
+        return intersection(idSet, other).length == other.length;
+    }
+    public static int[] intersection(int[] a, int[] b){
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+
+        while(i < a.length && j < b.length){
+            if(a[i] < b[j]) i++;
+            else if(a[i] > b[j]) j++;
+            else{
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+    public static int[] union(int[] a, int[] b){
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+
+        while(i < a.length || j < b.length){
+            if(j >= b.length || (i < a.length && a[i] < b[j])) result[n++] = a[i++];
+            else if(i >= a.length || a[i] > b[j]) result[n++] = b[j++];
+            else{
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+    public static int[] difference(int[] a, int[] b){
+        int[] result = new int[a.length];
+        int i = 0, j = 0, n = 0;
+
+        while(i < a.length){
+            if(j >= b.length || a[i] < b[j]) result[n++] = a[i++];
+            else if(a[i] > b[j]) j++;
+            else{
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+}
@@ -0,0 +1,276 @@
+package jszuru.resources;
+
+import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruTagListener;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.search.SzurubooruSearch;
+
+import java.io.IOException;
+import java.util.*;
+
+// In-memory copy of the implications and suggestions of every tag, nodes being ids of the API's tag dictionary.
+// The transitive closure of the implications is computed once per tag and kept until an edge it depends on changes,
+// so expanding a set of tags never hits the server
+@SuppressWarnings("unused")
+public class SzurubooruTagGraph implements SzurubooruTagListener {
+    public static final List<String> FIELDS = List.of("names", "category", "usages", "implications", "suggestions");
+
+    private static final int[] NONE = new int[0];
+
+    private final SzurubooruAPI api;
+    private final SzurubooruTagDictionary dictionary;
+
+    private final Map<Integer, int[]> implications = new HashMap<>();
+    private final Map<Integer, int[]> suggestions = new HashMap<>();
+    // Tags implying each tag, used to find which closures an edge change invalidates
+    private final Map<Integer, Set<Integer>> impliedBy = new HashMap<>();
+    // Sorted id sets, each tag included in its own closure
+    private final Map<Integer, int[]> closures = new HashMap<>();
+
+    public SzurubooruTagGraph(SzurubooruAPI api){
+        this.api = api;
+        this.dictionary = api.getTagDictionary();
+    }
+
+    // Scans every tag matching the query, null meaning all of them, then precomputes the closures
+    public synchronized void load(String searchQuery, int pageSize) throws IOException, SzurubooruHTTPException {
+        SzurubooruSearch.forEachJson(api, searchQuery, List.of("tags"), FIELDS, pageSize, this::update);
+
+        for(int id:implications.keySet().toArray(new Integer[0])){
+            this.getClosure(id);
+        }
+    }
+
+    protected int[] internAll(Object tags){
+        if(!(tags instanceof List<?> list)) return NONE;
+
+        return list.stream()
+                .mapToInt(x -> dictionary.intern((Map<String, Object>) x))
+                .toArray();
+    }
+    // Replaces the outgoing edges of a tag, given its JSON, and forgets only the closures that could reach it
+    public synchronized void update(Map<String, Object> tagJson){
+        int id = dictionary.intern(tagJson);
+
+        if(tagJson.containsKey("implications")) this.setImplications(id, this.internAll(tagJson.get("implications")));
+        if(tagJson.containsKey("suggestions")) suggestions.put(id, this.internAll(tagJson.get("suggestions")));
+    }
+    protected void setImplications(int id, int[] implied){
+        int[] previous = implications.getOrDefault(id, NONE);
+        if(Arrays.equals(previous, implied) && closures.containsKey(id)) return;
+
+        for(int x:previous){
+            Set<Integer> parents = impliedBy.get(x);
+            if(parents != null) parents.remove(id);
+        }
+        for(int x:implied){
+            impliedBy.computeIfAbsent(x, y -> new HashSet<>()).add(id);
+        }
+        implications.put(id, implied);
+
+        this.invalidate(id);
+    }
+    public synchronized void remove(Collection<String> names){
+        for(String name:names){
+            int id = dictionary.getId(name);
+            if(id < 0) continue;
+
+            this.setImplications(id, NONE);
+            suggestions.remove(id);
+            implications.remove(id);
+
+            // Tags implying the removed one lose that edge too, as the server drops it along with the tag
+            Set<Integer> parents = impliedBy.remove(id);
+            if(parents == null) continue;
+
+            for(int parent:parents){
+                implications.computeIfPresent(parent, (x, y) -> Arrays.stream(y).filter(z -> z != id).toArray());
+                this.invalidate(parent);
+            }
+        }
+    }
+    protected void invalidate(int id){
+        Deque<Integer> pending = new ArrayDeque<>(List.of(id));
+        Set<Integer> seen = new HashSet<>(pending);
+
+        while(!pending.isEmpty()){
+            int x = pending.pop();
+            closures.remove(x);
+
+            for(int parent:impliedBy.getOrDefault(x, Set.of())){
+                if(seen.add(parent)) pending.push(parent);
+            }
+        }
+    }
+
+    // Breadth-first over the implications, reusing the closure of any tag already computed. Those are complete,
+    // so the result stays exact even when the implications contain cycles
+    protected int[] getClosure(int id){
+        int[] cached = closures.get(id);
+        if(cached != null) return cached;
+
+        BitSet reached = new BitSet();
+        Deque<Integer> pending = new ArrayDeque<>(List.of(id));
+        reached.set(id);
+
+        while(!pending.isEmpty()){
+            int x = pending.pop();
+
+            int[] known = x == id? null : closures.get(x);
+            if(known != null){
+                for(int y:known) reached.set(y);
+                continue;
+            }
+
+            for(int y:implications.getOrDefault(x, NONE)){
+                if(!reached.get(y)){
+                    reached.set(y);
+                    pending.push(y);
+                }
+            }
+        }
+
+        int[] closure = reached.stream().toArray();
+        closures.put(id, closure);
+        return closure;
+    }
+
+    public synchronized int[] getClosureIds(String name){
+        int id = dictionary.getId(name);
+        return id < 0? NONE : this.getClosure(id).clone();
+    }
+    // Every tag implied, directly or not, by the given one
+    public synchronized List<String> getImplied(String name){
+        int id = dictionary.getId(name);
+        if(id < 0) return List.of();
+
+        return Arrays.stream(this.getClosure(id))
+                .filter(x -> x != id)
+                .mapToObj(dictionary::getName)
+                .toList();
+    }
+    public synchronized boolean implies(String name, String implied){
+        int id = dictionary.getId(name);
+        int impliedId = dictionary.getId(implied);
+
+        return id >= 0 && impliedId >= 0 && SzurubooruTagDictionary.contains(this.getClosure(id), impliedId);
+    }
+    // The given tags plus everything they imply, as primary names. Unknown names are kept as they are
+    public synchronized List<String> expand(Collection<String> names){
+        Set<String> expanded = new LinkedHashSet<>();
+        int[] ids = NONE;
+
+        for(String name:names){
+            int id = dictionary.getId(name);
+            if(id < 0) expanded.add(name);
+            else ids = SzurubooruTagDictionary.union(ids, this.getClosure(id));
+        }
+        for(int id:ids){
+            expanded.add(dictionary.getName(id));
+        }
+
+        return List.copyOf(expanded);
+    }
+    // Suggestions of the expanded tags that aren't already part of them
+    public synchronized List<String> suggest(Collection<String> names){
+        int[] expanded = dictionary.toIdSet(this.expand(names));
+        int[] suggested = NONE;
+
+        for(int id:expanded){
+            suggested = SzurubooruTagDictionary.union(suggested, SzurubooruTagDictionary.toIdSet(suggestions.getOrDefault(id, NONE)));
+        }
+
+        return Arrays.stream(SzurubooruTagDictionary.difference(suggested, expanded))
+                .mapToObj(dictionary::getName)
+                .toList();
+    }
+
+    // Tarjan's strongly connected components, every component with more than one tag, or a tag implying itself,
+    // being a cycle
+    public synchronized List<List<String>> findCycles(){
+        Map<Integer, Integer> index = new HashMap<>();
+        Map<Integer, Integer> lowLink = new HashMap<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> onStack = new HashSet<>();
+        List<List<String>> cycles = new ArrayList<>();
+        int[] counter = {0};
+
+        for(int id:implications.keySet()){
+            if(!index.containsKey(id)) this.strongConnect(id, index, lowLink, stack, onStack, cycles, counter);
+        }
+
+        return cycles;
+    }
+    protected void strongConnect(int root, Map<Integer, Integer> index, Map<Integer, Integer> lowLink,
+                                 Deque<Integer> stack, Set<Integer> onStack, List<List<String>> cycles, int[] counter){
+        // Iterative, so that long implication chains can't overflow the call stack
+        Deque<int[]> frames = new ArrayDeque<>();
+        frames.push(new int[]{root, 0});
+        index.put(root, counter[0]);
+        lowLink.put(root, counter[0]++);
+        stack.push(root);
+        onStack.add(root);
+
+        while(!frames.isEmpty()){
+            int[] frame = frames.peek();
+            int id = frame[0];
+            int[] edges = implications.getOrDefault(id, NONE);
+
+            if(frame[1] < edges.length){
+                int next = edges[frame[1]++];
+
+                if(!index.containsKey(next)){
+                    index.put(next, counter[0]);
+                    lowLink.put(next, counter[0]++);
+                    stack.push(next);
+                    onStack.add(next);
+                    frames.push(new int[]{next, 0});
+                }
+                else if(onStack.contains(next)){
+                    lowLink.put(id, Math.min(lowLink.get(id), index.get(next)));
+                }
+                continue;
+            }
+
+            frames.pop();
+            if(!frames.isEmpty()){
+                int parent = frames.peek()[0];
+                lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(id)));
+            }
+            if(!lowLink.get(id).equals(index.get(id))) continue;
+
+            List<String> component = new ArrayList<>();
+            int member;
+            do{
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(dictionary.getName(member));
+            } while(member != id);
+
+            if(component.size() > 1 || Arrays.stream(edges).anyMatch(x -> x == id)) cycles.add(component);
+        }
+    }
+    // Whether making the tag imply the other one would close a cycle
+    public synchronized boolean wouldCreateCycle(String name, String implied){
+        return name.equalsIgnoreCase(implied) || this.implies(implied, name);
+    }
+
+    public synchronized int size(){
+        return implications.size();
+    }
+    public synchronized void clear(){
+        implications.clear();
+        suggestions.clear();
+        impliedBy.clear();
+        closures.clear();
+    }
+
+    @Override
+    public void tagPushed(SzurubooruTag tag) {
+        this.update(tag.getJson());
+    }
+    @Override
+    public void tagDeleted(SzurubooruTag tag, List<String> names) {
+        this.remove(names);
+    }
+}
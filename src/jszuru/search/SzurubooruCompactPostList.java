@@ -0,0 +1,271 @@
+package jszuru.search;
+
+import jszuru.SzurubooruAPI;
+import jszuru.resources.PostSafety;
+import jszuru.resources.SzurubooruPost;
+import jszuru.resources.SzurubooruResource;
+import jszuru.resources.SzurubooruTag;
+import jszuru.resources.SzurubooruTagDictionary;
+
+import java.util.*;
+
+// Holds the lazily loaded fields of many posts in parallel primitive arrays instead of one JSON map per post,
+// tags being stored as ids of the API's tag dictionary.
+// Posts are only materialized when requested, as views reading straight from the arrays
+@SuppressWarnings("unused")
+public class SzurubooruCompactPostList extends AbstractList<SzurubooruPost> implements RandomAccess {
+    public static final List<String> FIELDS = List.of("id", "safety", "type", "contentUrl", "flags", "tags", "relations");
+
+    protected static final byte FLAG_LOOP = 1;
+    protected static final byte FLAG_SOUND = 2;
+
+    private static final PostSafety[] safeties = PostSafety.values();
+
+    protected final SzurubooruAPI api;
+    protected final SzurubooruTagDictionary tagDictionary;
+    protected int size = 0;
+
+    protected int[] ids = new int[16];
+    protected byte[] safety = new byte[16];
+    protected byte[] types = new byte[16];
+    protected byte[] flags = new byte[16];
+    protected String[] contentUrls = new String[16];
+
+    // Tags and relations of post i live in [offsets[i], offsets[i + 1]) of the respective id arrays
+    protected int[] tagOffsets = new int[17];
+    protected int[] tagIds = new int[64];
+    protected int[] relationOffsets = new int[17];
+    protected int[] relationIds = new int[16];
+
+    protected final List<String> typeNames = new ArrayList<>();
+
+    public SzurubooruCompactPostList(SzurubooruAPI api){
+        this.api = api;
+        this.tagDictionary = api.getTagDictionary();
+    }
+
+    protected void ensureCapacity(int capacity){
+        if(capacity <= ids.length) return;
+
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        safety = Arrays.copyOf(safety, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        contentUrls = Arrays.copyOf(contentUrls, newCapacity);
+        tagOffsets = Arrays.copyOf(tagOffsets, newCapacity + 1);
+        relationOffsets = Arrays.copyOf(relationOffsets, newCapacity + 1);
+    }
+    protected static int[] append(int[] array, int length, int value){
+        if(length == array.length) array = Arrays.copyOf(array, Math.max(16, length * 2));
+        array[length] = value;
+        return array;
+    }
+    protected static byte internIndex(List<String> table, String value){
+        int index = table.indexOf(value);
+        if(index < 0){
+            table.add(value);
+            index = table.size() - 1;
+        }
+
+        return (byte) index;
+    }
+
+    // Copies the lazily loaded fields of a post JSON, the map itself is not retained
+    public void addJson(Map<String, Object> post){
+        ensureCapacity(size + 1);
+        int i = size;
+
+        ids[i] = SzurubooruResource.getIntValue(post.get("id"));
+        safety[i] = (byte) PostSafety.getEnum((String) post.getOrDefault("safety", "safe")).ordinal();
+        types[i] = internIndex(typeNames, (String) post.get("type"));
+        contentUrls[i] = (String) post.get("contentUrl");
+
+        byte postFlags = 0;
+        List<String> flagList = (List<String>) post.get("flags");
+        if(flagList != null){
+            if(flagList.contains("loop")) postFlags |= FLAG_LOOP;
+            if(flagList.contains("sound")) postFlags |= FLAG_SOUND;
+        }
+        flags[i] = postFlags;
+
+        int tagCount = tagOffsets[i];
+        List<Map<String, Object>> tags = (List<Map<String, Object>>) post.get("tags");
+        if(tags != null){
+            for(Map<String, Object> tag:tags){
+                tagIds = append(tagIds, tagCount++, tagDictionary.intern(tag));
+            }
+        }
+        tagOffsets[i + 1] = tagCount;
+
+        int relationCount = relationOffsets[i];
+        List<Map<String, Object>> relations = (List<Map<String, Object>>) post.get("relations");
+        if(relations != null){
+            for(Map<String, Object> relation:relations){
+                relationIds = append(relationIds, relationCount++, SzurubooruResource.getIntValue(relation.get("id")));
+            }
+        }
+        relationOffsets[i + 1] = relationCount;
+
+        size++;
+    }
+
+    public void trimToSize(){
+        ids = Arrays.copyOf(ids, size);
+        safety = Arrays.copyOf(safety, size);
+        types = Arrays.copyOf(types, size);
+        flags = Arrays.copyOf(flags, size);
+        contentUrls = Arrays.copyOf(contentUrls, size);
+        tagOffsets = Arrays.copyOf(tagOffsets, size + 1);
+        relationOffsets = Arrays.copyOf(relationOffsets, size + 1);
+        tagIds = Arrays.copyOf(tagIds, tagOffsets[size]);
+        relationIds = Arrays.copyOf(relationIds, relationOffsets[size]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+    // Materializes a flyweight post backed by this list, nothing is copied until pulling or pushing it switches it
+    // to a regular JSON map
+    @Override
+    public SzurubooruPost get(int index) {
+        Objects.checkIndex(index, size);
+        return new SzurubooruPost(api, new PostJsonView(index));
+    }
+
+    public int getId(int index){
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+    public PostSafety getSafety(int index){
+        Objects.checkIndex(index, size);
+        return safeties[safety[index]];
+    }
+    public String getType(int index){
+        Objects.checkIndex(index, size);
+        return typeNames.get(types[index]);
+    }
+    public String getContentUrl(int index){
+        Objects.checkIndex(index, size);
+        return contentUrls[index];
+    }
+    public boolean isLoop(int index){
+        Objects.checkIndex(index, size);
+        return (flags[index] & FLAG_LOOP) != 0;
+    }
+    public boolean hasSound(int index){
+        Objects.checkIndex(index, size);
+        return (flags[index] & FLAG_SOUND) != 0;
+    }
+    public int[] getRelationIds(int index){
+        Objects.checkIndex(index, size);
+        return Arrays.copyOfRange(relationIds, relationOffsets[index], relationOffsets[index + 1]);
+    }
+    public int getTagCount(int index){
+        Objects.checkIndex(index, size);
+        return tagOffsets[index + 1] - tagOffsets[index];
+    }
+    public List<String> getTagNames(int index){
+        Objects.checkIndex(index, size);
+
+        List<String> names = new ArrayList<>(getTagCount(index));
+        for(int i = tagOffsets[index]; i < tagOffsets[index + 1]; i++){
+            names.add(tagDictionary.getName(tagIds[i]));
+        }
+
+        return names;
+    }
+    // Backed by the tag dictionary's shared views
+    public List<SzurubooruTag> getTags(int index){
+        Objects.checkIndex(index, size);
+
+        List<SzurubooruTag> tags = new ArrayList<>(getTagCount(index));
+        for(int i = tagOffsets[index]; i < tagOffsets[index + 1]; i++){
+            tags.add(tagDictionary.getTag(tagIds[i]));
+        }
+
+        return tags;
+    }
+    // Sorted dictionary ids, usable with the SzurubooruTagDictionary set operations
+    public int[] getTagIdSet(int index){
+        Objects.checkIndex(index, size);
+        return SzurubooruTagDictionary.toIdSet(Arrays.copyOfRange(tagIds, tagOffsets[index], tagOffsets[index + 1]));
+    }
+    public boolean hasTag(int index, int tagId){
+        Objects.checkIndex(index, size);
+
+        for(int i = tagOffsets[index]; i < tagOffsets[index + 1]; i++){
+            if(tagIds[i] == tagId) return true;
+        }
+
+        return false;
+    }
+    public boolean hasTag(int index, String name){
+        int tagId = tagDictionary.getId(name);
+        return tagId >= 0 && this.hasTag(index, tagId);
+    }
+    public boolean hasAllTags(int index, int[] tagIdSet){
+        return SzurubooruTagDictionary.containsAll(this.getTagIdSet(index), tagIdSet);
+    }
+    public int[] getIds(){
+        return Arrays.copyOf(ids, size);
+    }
+
+    protected Object fieldValue(int index, String field){
+        return switch(field){
+            case "id" -> ids[index];
+            case "safety" -> safeties[safety[index]].toString();
+            case "type" -> typeNames.get(types[index]);
+            case "contentUrl" -> contentUrls[index];
+            case "flags" -> {
+                List<String> flagList = new ArrayList<>(2);
+                if((flags[index] & FLAG_LOOP) != 0) flagList.add("loop");
+                if((flags[index] & FLAG_SOUND) != 0) flagList.add("sound");
+                yield flagList;
+            }
+            case "tags" -> {
+                List<Map<String, Object>> tags = new ArrayList<>(getTagCount(index));
+                for(int i = tagOffsets[index]; i < tagOffsets[index + 1]; i++){
+                    tags.add(tagDictionary.getJson(tagIds[i]));
+                }
+                yield tags;
+            }
+            case "relations" -> {
+                List<Map<String, Object>> relations = new ArrayList<>();
+                for(int i = relationOffsets[index]; i < relationOffsets[index + 1]; i++){
+                    relations.add(Map.of("id", relationIds[i]));
+                }
+                yield relations;
+            }
+            default -> null;
+        };
+    }
+
+    // Read-only JSON view of a single row, values are rebuilt from the arrays on access
+    protected class PostJsonView extends AbstractMap<String, Object> {
+        protected final int index;
+
+        protected PostJsonView(int index){
+            this.index = index;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return FIELDS.contains(key);
+        }
+        @Override
+        public Object get(Object key) {
+            return key instanceof String field? fieldValue(index, field) : null;
+        }
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+            for(String field:FIELDS){
+                entries.add(new SimpleImmutableEntry<>(field, fieldValue(index, field)));
+            }
+
+            return entries;
+        }
+    }
+}
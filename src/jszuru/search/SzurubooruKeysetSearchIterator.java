@@ -0,0 +1,70 @@
+package jszuru.search;
+
+import jszuru.SzurubooruAPI;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+
+import java.io.IOException;
+import java.util.List;
+
+@SuppressWarnings("unused")
+public class SzurubooruKeysetSearchIterator<T extends SzurubooruResource> extends SzurubooruSearchIterator<T> {
+    protected final boolean ascending;
+    protected Integer pageLastId;
+    protected Integer lastId;
+    protected boolean lastPage = false;
+
+    public SzurubooruKeysetSearchIterator(SzurubooruAPI api,
+                                          String searchQuery,
+                                          Class<T> resourceClass,
+                                          int pageSize,
+                                          boolean eagerLoad,
+                                          boolean ascending,
+                                          Integer startAfterId) {
+        super(api, searchQuery, resourceClass, pageSize, eagerLoad);
+
+        this.ascending = ascending;
+        this.pageLastId = startAfterId;
+        this.lastId = startAfterId;
+
+        // Fails right away on queries that can't be scanned by id
+        SzurubooruSearch.keysetQuery(searchQuery, ascending, startAfterId);
+    }
+
+    protected String createPageQuery(){
+        return SzurubooruSearch.keysetQuery(searchQuery, ascending, pageLastId);
+    }
+
+    @Override
+    protected List<T> fetchNextPage() throws IOException, SzurubooruHTTPException {
+        if(lastPage) return null;
+
+        SzurubooruSearch.Page<T> page = SzurubooruSearch.fetchPage(api, this.createPageQuery(), resourceFactory, defaultResource, 0, pageSize, eagerLoad);
+        List<T> results = page.results();
+
+        if(results.isEmpty()) return null;
+
+        offset += results.size();
+        total = page.total();
+        lastPage = results.size() >= page.total();
+        pageLastId = SzurubooruResource.getIntValue(results.get(results.size() - 1).getJson().get("id"));
+
+        return results;
+    }
+
+    @Override
+    public T next() {
+        T element = super.next();
+        lastId = SzurubooruResource.getIntValue(element.getJson().get("id"));
+
+        return element;
+    }
+
+    // The id of the last resource returned by next(), usable to resume the scan later on
+    public Integer getLastId() {
+        return lastId;
+    }
+    public boolean isAscending() {
+        return ascending;
+    }
+}
@@ -0,0 +1,64 @@
+package jszuru.search;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+@SuppressWarnings("unused")
+public abstract class SzurubooruPagedIterator<T> implements Iterator<T> {
+    private List<T> page = null;
+    private int index = 0;
+    private boolean exhausted = false;
+
+    // Returns null or an empty list once there are no more pages
+    protected abstract List<T> fetchNextPage() throws IOException, SzurubooruHTTPException;
+
+    @Override
+    public boolean hasNext() {
+        while(page == null || index >= page.size()){
+            if(exhausted) return false;
+
+            // Drop the consumed page before fetching the next one
+            page = null;
+            index = 0;
+
+            List<T> nextPage;
+            try{
+                nextPage = this.fetchNextPage();
+            } catch (IOException e) {
+                exhausted = true;
+                throw new UncheckedIOException(e);
+            } catch (SzurubooruHTTPException e) {
+                exhausted = true;
+                throw new RuntimeException(e);
+            }
+
+            if(nextPage == null || nextPage.isEmpty()){
+                exhausted = true;
+                return false;
+            }
+
+            page = new ArrayList<>(nextPage);
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if(!this.hasNext()) throw new NoSuchElementException();
+
+        // Clear the slot so consumed resources can be collected while the rest of the page is iterated
+        T element = page.get(index);
+        page.set(index++, null);
+
+        return element;
+    }
+
+    protected void finish(){
+        exhausted = true;
+        page = null;
+    }
+}
@@ -0,0 +1,143 @@
+package jszuru.search;
+
+import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruAsyncAPI;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.exceptions.SzurubooruResourceNotSynchronizedException;
+import jszuru.resources.SzurubooruPost;
+import jszuru.resources.SzurubooruResource;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+// Walks posts one by one through their prev/next neighbours. Posts ahead in the direction of travel are
+// fetched in the background, and posts already visited are kept so stepping back is free
+@SuppressWarnings("unused")
+public class SzurubooruPostCursor {
+    protected record Neighbours(Integer prev, Integer next){}
+
+    private final SzurubooruAPI api;
+    private final int prefetchWindow;
+    private final Map<Integer, CompletableFuture<Neighbours>> neighbours;
+    private final Map<Integer, CompletableFuture<SzurubooruPost>> posts;
+
+    private int currentId;
+    private boolean forward = true;
+
+    public SzurubooruPostCursor(SzurubooruAPI api, int startId, int prefetchWindow, int cacheSize){
+        if(prefetchWindow < 0) throw new IllegalArgumentException("Prefetch window can't be negative");
+        if(cacheSize <= prefetchWindow) throw new IllegalArgumentException("Cache size must be larger than the prefetch window");
+
+        this.api = api;
+        this.prefetchWindow = prefetchWindow;
+        this.neighbours = createLruMap(cacheSize);
+        this.posts = createLruMap(cacheSize);
+        this.currentId = startId;
+
+        this.prefetchAround(startId);
+    }
+
+    protected static <T> Map<Integer, T> createLruMap(int maxSize){
+        return new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+    // Failed requests are forgotten, so that the next access tries again
+    protected synchronized <T> CompletableFuture<T> getOrLoad(Map<Integer, CompletableFuture<T>> cache, int id, IntFunction<CompletableFuture<T>> loader){
+        CompletableFuture<T> future = cache.get(id);
+        if(future != null) return future;
+
+        CompletableFuture<T> loaded = loader.apply(id);
+        cache.put(id, loaded);
+        loaded.whenComplete((x, e) -> {
+            if(e != null) this.forget(cache, id, loaded);
+        });
+
+        return loaded;
+    }
+    protected synchronized <T> void forget(Map<Integer, CompletableFuture<T>> cache, int id, CompletableFuture<T> future){
+        cache.remove(id, future);
+    }
+
+    protected CompletableFuture<Neighbours> getNeighbours(int id){
+        return this.getOrLoad(neighbours, id, x -> api.getAsyncApi()
+                .callAsync("GET", List.of("post", x + "", "around"))
+                .thenApply(data -> new Neighbours(neighbourId(data.get("prev")), neighbourId(data.get("next")))));
+    }
+    protected static Integer neighbourId(Object neighbour){
+        if(!(neighbour instanceof Map<?, ?> map) || map.get("id") == null) return null;
+        return SzurubooruResource.getIntValue(map.get("id"));
+    }
+    protected CompletableFuture<SzurubooruPost> getPost(int id){
+        return this.getOrLoad(posts, id, x -> api.getAsyncApi().getPostAsync(x));
+    }
+
+    // Both neighbours of the given post are fetched concurrently, then the window keeps growing in the direction of travel
+    protected void prefetchAround(int id){
+        this.getNeighbours(id).thenAccept(x -> {
+            Integer behind = forward? x.prev() : x.next();
+            if(behind != null) this.getPost(behind);
+        });
+        this.prefetch(id, forward, prefetchWindow);
+    }
+    protected void prefetch(int fromId, boolean forward, int remaining){
+        if(remaining <= 0) return;
+
+        this.getNeighbours(fromId).thenAccept(x -> {
+            Integer id = forward? x.next() : x.prev();
+            if(id == null) return;
+
+            this.getPost(id);
+            this.prefetch(id, forward, remaining - 1);
+        });
+    }
+
+    protected SzurubooruPost move(boolean forward) throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        Neighbours around = SzurubooruAsyncAPI.await(this.getNeighbours(currentId));
+        Integer target = forward? around.next() : around.prev();
+        if(target == null) return null;
+
+        CompletableFuture<SzurubooruPost> post = this.getPost(target);
+        synchronized(this){
+            this.currentId = target;
+            this.forward = forward;
+        }
+        this.prefetchAround(target);
+
+        return SzurubooruAsyncAPI.await(post);
+    }
+
+    // Returns null, without moving, when there's no post in that direction
+    public SzurubooruPost next() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return this.move(true);
+    }
+    public SzurubooruPost previous() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return this.move(false);
+    }
+    public boolean hasNext() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return SzurubooruAsyncAPI.await(this.getNeighbours(currentId)).next() != null;
+    }
+    public boolean hasPrevious() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return SzurubooruAsyncAPI.await(this.getNeighbours(currentId)).prev() != null;
+    }
+    public SzurubooruPost current() throws IOException, SzurubooruHTTPException, SzurubooruResourceNotSynchronizedException {
+        return SzurubooruAsyncAPI.await(this.getPost(currentId));
+    }
+
+    public synchronized int getCurrentId() {
+        return currentId;
+    }
+    public synchronized boolean isMovingForward() {
+        return forward;
+    }
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+}
@@ -0,0 +1,128 @@
+package jszuru.search;
+
+import jszuru.SzurubooruAPI;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("unused")
+public class SzurubooruPrefetchingSearchIterator<T extends SzurubooruResource> extends SzurubooruSearchIterator<T> implements AutoCloseable {
+    protected record PendingPage<T>(int offset, Future<SzurubooruSearch.Page<T>> page){}
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    protected static final long IDLE_THREAD_TIMEOUT_MILLIS = 1000;
+
+    protected final int prefetchPages;
+    protected final ExecutorService executor;
+    protected final Deque<PendingPage<T>> pendingPages = new ArrayDeque<>();
+
+    protected int effectivePageSize;
+    protected int nextRequestOffset = 0;
+
+    public SzurubooruPrefetchingSearchIterator(SzurubooruAPI api,
+                                               String searchQuery,
+                                               Class<T> resourceClass,
+                                               int pageSize,
+                                               boolean eagerLoad,
+                                               int prefetchPages) {
+        super(api, searchQuery, resourceClass, pageSize, eagerLoad);
+
+        if(prefetchPages <= 0) throw new IllegalArgumentException("Prefetch pages must be positive");
+
+        this.prefetchPages = prefetchPages;
+        this.effectivePageSize = pageSize;
+        // Idle workers exit on their own, so an iterator that is dropped half-way without close() doesn't keep them
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(prefetchPages, prefetchPages,
+                IDLE_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "jszuru-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    protected void schedule(){
+        // Until the first page reports the total only that page is requested
+        while(pendingPages.size() < prefetchPages && nextRequestOffset < total &&
+                (nextRequestOffset == 0 || total != Integer.MAX_VALUE)){
+            int requestOffset = nextRequestOffset;
+            Future<SzurubooruSearch.Page<T>> page = SzurubooruSearch.submitPage(executor, api, searchQuery, resourceFactory, defaultResource, requestOffset, pageSize, eagerLoad);
+
+            pendingPages.addLast(new PendingPage<>(requestOffset, page));
+            nextRequestOffset += effectivePageSize;
+        }
+    }
+    protected void cancelPending(){
+        pendingPages.forEach(x -> x.page().cancel(true));
+        pendingPages.clear();
+    }
+
+    @Override
+    protected List<T> fetchNextPage() throws IOException, SzurubooruHTTPException {
+        if(executor.isShutdown()) return null;
+
+        this.schedule();
+        if(pendingPages.isEmpty()){
+            this.close();
+            return null;
+        }
+
+        PendingPage<T> pending = pendingPages.removeFirst();
+        SzurubooruSearch.Page<T> page;
+
+        try{
+            page = pending.page().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.close();
+            throw new InterruptedIOException("Interrupted while waiting for a search page");
+        } catch (ExecutionException e) {
+            this.close();
+
+            if(e.getCause() instanceof IOException ioException) throw ioException;
+            if(e.getCause() instanceof SzurubooruHTTPException httpException) throw httpException;
+            throw new RuntimeException(e.getCause());
+        }
+
+        int received = page.results().size();
+        offset = pending.offset() + received;
+        total = page.total();
+
+        // The server may cap the page size below the requested one: requests already in flight
+        // were issued with the wrong stride, so they are discarded and rescheduled
+        if(received < effectivePageSize && offset < total && received > 0){
+            this.cancelPending();
+            effectivePageSize = received;
+            nextRequestOffset = offset;
+        }
+
+        if(received == 0 || offset >= total){
+            this.close();
+        }
+        else{
+            this.schedule();
+        }
+
+        return page.results();
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    // Called as soon as the last page is consumed or a page fails, close() only matters when stopping early
+    @Override
+    public void close() {
+        this.cancelPending();
+        this.finish();
+        executor.shutdownNow();
+    }
+}
@@ -1,84 +1,407 @@
 package jszuru.search;
 
 import jszuru.SzurubooruAPI;
+import jszuru.SzurubooruAsyncAPI;
 import jszuru.exceptions.SzurubooruHTTPException;
 import jszuru.resources.SzurubooruResource;
+import jszuru.resources.SzurubooruResourceFactory;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @SuppressWarnings("unused")
 public class SzurubooruSearch {
     public static <T extends SzurubooruResource> List<T> searchGeneric(SzurubooruAPI api,
                                                      String searchQuery,
                                                      Class<T> resourceClass,
-                                                     int pageSize) throws IOException, SzurubooruHTTPException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+                                                     int pageSize) throws IOException, SzurubooruHTTPException {
         return searchGeneric(api, searchQuery, resourceClass, pageSize, false);
     }
     public static <T extends SzurubooruResource> List<T> searchGeneric(SzurubooruAPI api,
                                                      String searchQuery,
                                                      Class<T> resourceClass,
                                                      int pageSize,
-                                                     boolean eagerLoad) throws IOException, SzurubooruHTTPException, NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+                                                     boolean eagerLoad) throws IOException, SzurubooruHTTPException {
+        List<T> results = new ArrayList<>();
+        SzurubooruSearchIterator<T> iterator = new SzurubooruSearchIterator<>(api, searchQuery, resourceClass, pageSize, eagerLoad);
+
+        List<T> page;
+        while((page = iterator.fetchNextPage()) != null && !page.isEmpty()){
+            results.addAll(page);
+        }
+
+        return results;
+    }
+
+    public static <T extends SzurubooruResource> List<T> searchGenericParallel(SzurubooruAPI api,
+                                                                             String searchQuery,
+                                                                             Class<T> resourceClass,
+                                                                             int pageSize,
+                                                                             boolean eagerLoad,
+                                                                             int parallelism,
+                                                                             boolean ordered) throws IOException, SzurubooruHTTPException {
+        if(parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+
+        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        T defaultResource = resourceFactory.apply(api, new HashMap<>());
+
+        Page<T> firstPage = fetchPage(api, searchQuery, resourceFactory, defaultResource, 0, pageSize, eagerLoad);
+        int firstSize = firstPage.results().size();
+        if(firstSize == 0 || firstSize >= firstPage.total()) return new ArrayList<>(firstPage.results());
+
+        // The first page tells both the total and the page size the server actually honours
+        List<Integer> shardOffsets = new ArrayList<>();
+        for(int offset = firstSize; offset < firstPage.total(); offset += firstSize){
+            shardOffsets.add(offset);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, shardOffsets.size()), runnable -> {
+            Thread thread = new Thread(runnable, "jszuru-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<CompletableFuture<Page<T>>> completed = new LinkedBlockingQueue<>();
+        Map<CompletableFuture<Page<T>>, Integer> shardIndexes = new HashMap<>();
+
+        try{
+            for(int i = 0; i < shardOffsets.size(); i++){
+                CompletableFuture<Page<T>> shard = submitPage(executor, api, searchQuery, resourceFactory, defaultResource, shardOffsets.get(i), firstSize, eagerLoad);
+                shardIndexes.put(shard, i);
+                shard.whenComplete((x, e) -> completed.add(shard));
+            }
+
+            List<List<T>> shards = new ArrayList<>(Collections.nCopies(shardOffsets.size(), null));
+            List<T> results = new ArrayList<>(firstPage.total());
+            results.addAll(firstPage.results());
+
+            for(int i = 0; i < shardOffsets.size(); i++){
+                CompletableFuture<Page<T>> shard = completed.take();
+                List<T> shardResults = shard.get().results();
+
+                if(ordered) shards.set(shardIndexes.get(shard), shardResults);
+                else results.addAll(shardResults);
+            }
+
+            if(ordered) shards.forEach(results::addAll);
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for search shards");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException ioException) throw ioException;
+            if(e.getCause() instanceof SzurubooruHTTPException httpException) throw httpException;
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static <T extends SzurubooruResource> SzurubooruSearchIterator<T> iterateGeneric(SzurubooruAPI api,
+                                                                                          String searchQuery,
+                                                                                          Class<T> resourceClass,
+                                                                                          int pageSize,
+                                                                                          boolean eagerLoad) {
+        return new SzurubooruSearchIterator<>(api, searchQuery, resourceClass, pageSize, eagerLoad);
+    }
+    public static <T extends SzurubooruResource> Stream<T> streamGeneric(SzurubooruAPI api,
+                                                                         String searchQuery,
+                                                                         Class<T> resourceClass,
+                                                                         int pageSize,
+                                                                         boolean eagerLoad) {
+        return stream(iterateGeneric(api, searchQuery, resourceClass, pageSize, eagerLoad));
+    }
+    // Pages are fetched on background threads that are released once the search is drained or fails. Use
+    // try-with-resources when the iterator or stream may be abandoned early, closing it cancels the pages in flight
+    public static <T extends SzurubooruResource> SzurubooruPrefetchingSearchIterator<T> iterateGenericPrefetching(SzurubooruAPI api,
+                                                                                                                String searchQuery,
+                                                                                                                Class<T> resourceClass,
+                                                                                                                int pageSize,
+                                                                                                                boolean eagerLoad,
+                                                                                                                int prefetchPages) {
+        return new SzurubooruPrefetchingSearchIterator<>(api, searchQuery, resourceClass, pageSize, eagerLoad, prefetchPages);
+    }
+    public static <T extends SzurubooruResource> Stream<T> streamGenericPrefetching(SzurubooruAPI api,
+                                                                                    String searchQuery,
+                                                                                    Class<T> resourceClass,
+                                                                                    int pageSize,
+                                                                                    boolean eagerLoad,
+                                                                                    int prefetchPages) {
+        SzurubooruPrefetchingSearchIterator<T> iterator = iterateGenericPrefetching(api, searchQuery, resourceClass, pageSize, eagerLoad, prefetchPages);
+        return stream(iterator).onClose(iterator::close);
+    }
+    public static <T extends SzurubooruResource> SzurubooruKeysetSearchIterator<T> iterateGenericKeyset(SzurubooruAPI api,
+                                                                                                      String searchQuery,
+                                                                                                      Class<T> resourceClass,
+                                                                                                      int pageSize,
+                                                                                                      boolean eagerLoad,
+                                                                                                      boolean ascending,
+                                                                                                      Integer startAfterId) {
+        return new SzurubooruKeysetSearchIterator<>(api, searchQuery, resourceClass, pageSize, eagerLoad, ascending, startAfterId);
+    }
+    // Raw JSON of every result restricted to the given fields, for scans that don't need resource instances
+    public static void forEachJson(SzurubooruAPI api,
+                                   String searchQuery,
+                                   List<String> classUrlParts,
+                                   List<String> fields,
+                                   int pageSize,
+                                   Consumer<Map<String, Object>> consumer) throws IOException, SzurubooruHTTPException {
         int offset = 0;
         int total = Integer.MAX_VALUE;
 
-        List<T> results = new ArrayList<>();
+        while(offset < total){
+            PageInfo page = streamJsonPage(api, searchQuery, classUrlParts, fields, offset, pageSize, consumer);
+            if(page.count() == 0) break;
+
+            offset += page.count();
+            total = page.total();
+        }
+    }
+    // The scan relies on its own sort:id, so queries sorting on something else are rejected
+    public static String keysetQuery(String searchQuery, boolean ascending, Integer lastId){
+        StringBuilder query = new StringBuilder();
+        if(searchQuery != null && !searchQuery.isBlank()){
+            for(String token:searchQuery.strip().split("\\s+")){
+                String name = token.toLowerCase(Locale.ROOT);
+                if(name.startsWith("sort:") || name.startsWith("-sort:")){
+                    throw new IllegalArgumentException("Keyset scans sort by id, the query can't have its own sort: " + token);
+                }
+            }
+
+            query.append(searchQuery.strip()).append(' ');
+        }
 
-        Constructor<T> resourceConstructor = resourceClass.getDeclaredConstructor(SzurubooruAPI.class, Map.class);
-        T defaultResource = resourceConstructor.newInstance(api, new HashMap<>());
+        query.append(ascending? "sort:id,asc" : "sort:id");
+
+        // Every page starts right after the last seen id instead of skipping an ever-growing offset
+        if(lastId != null){
+            query.append(ascending? " id:" + (lastId + 1) + ".." : " id:.." + (lastId - 1));
+        }
+
+        return query.toString();
+    }
+    // Raw JSON pages of a keyset scan restricted to the given fields, the consumer gets a whole page at a time.
+    // Returns the id of the last result, or startAfterId when nothing matched
+    public static Integer forEachJsonPageKeyset(SzurubooruAPI api,
+                                                String searchQuery,
+                                                List<String> classUrlParts,
+                                                List<String> fields,
+                                                int pageSize,
+                                                boolean ascending,
+                                                Integer startAfterId,
+                                                Consumer<List<Map<String, Object>>> consumer) throws IOException, SzurubooruHTTPException {
+        Integer lastId = startAfterId;
+
+        while(true){
+            List<Map<String, Object>> results = new ArrayList<>(pageSize);
+            PageInfo page = streamJsonPage(api, keysetQuery(searchQuery, ascending, lastId), classUrlParts, fields, 0, pageSize, results::add);
+            if(results.isEmpty()) return lastId;
+
+            lastId = SzurubooruResource.getIntValue(results.get(results.size() - 1).get("id"));
+            consumer.accept(results);
+
+            if(results.size() >= page.total()) return lastId;
+        }
+    }
+    // Backslash-escapes the characters the query parser treats as syntax, so the value is matched literally
+    public static String escapeQueryValue(String value){
+        StringBuilder escaped = new StringBuilder(value.length());
+
+        for(char c:value.toCharArray()){
+            if(c == '\\' || c == ',' || c == ':' || c == '*' || c == '.' || c == '-') escaped.append('\\');
+            escaped.append(c);
+        }
+
+        return escaped.toString();
+    }
+
+    public static <T> Stream<T> stream(Iterator<T> iterator){
+        // Pages are only requested when the stream pulls past the current one, so limit() and takeWhile() stop the search
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public static <T extends SzurubooruResource> void forEachGeneric(SzurubooruAPI api,
+                                                                     String searchQuery,
+                                                                     Class<T> resourceClass,
+                                                                     int pageSize,
+                                                                     boolean eagerLoad,
+                                                                     Consumer<T> consumer) throws IOException, SzurubooruHTTPException {
+        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        T defaultResource = resourceFactory.apply(api, new HashMap<>());
+
+        int offset = 0;
+        int total = Integer.MAX_VALUE;
 
         while(offset < total){
-            Map<String, String> urlQuery = new HashMap<>(Map.of("offset", offset + "", "limit", pageSize + ""));
-            if(searchQuery != null) urlQuery.put("query", searchQuery);
+            PageInfo page = streamPage(api, searchQuery, resourceFactory, defaultResource, offset, pageSize, eagerLoad, consumer);
+            if(page.count() == 0) break;
 
-            if(!eagerLoad){
-                urlQuery.put("fields", String.join(",", defaultResource.lazyLoadComponents()));
-            }
+            offset += page.count();
+            total = page.total();
+        }
+    }
 
-            Map<String, Object> page = api.call("GET", defaultResource.getClassUrlParts(), urlQuery, null);
-            offset += ((List<?>)page.get("results")).size();
+    protected record Page<T>(List<T> results, int total){}
+    protected record PageInfo(int count, int total){}
 
-            if(!page.get("total").equals(total)){
-                total = ((Double)page.get("total")).intValue();
+    protected static <T extends SzurubooruResource> Page<T> fetchPage(SzurubooruAPI api,
+                                                                      String searchQuery,
+                                                                      BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory,
+                                                                      T defaultResource,
+                                                                      int offset,
+                                                                      int pageSize,
+                                                                      boolean eagerLoad) throws IOException, SzurubooruHTTPException {
+        List<T> results = new ArrayList<>(pageSize);
+        PageInfo page = streamPage(api, searchQuery, resourceFactory, defaultResource, offset, pageSize, eagerLoad, results::add);
+
+        return new Page<>(results, page.total());
+    }
+    // SzurubooruHTTPException isn't an Exception, so it can't be thrown out of a Callable. The page is completed by
+    // hand instead, and get() throws an ExecutionException caused by the exception fetchPage threw
+    protected static <T extends SzurubooruResource> CompletableFuture<Page<T>> submitPage(ExecutorService executor,
+                                                                                      SzurubooruAPI api,
+                                                                                      String searchQuery,
+                                                                                      BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory,
+                                                                                      T defaultResource,
+                                                                                      int offset,
+                                                                                      int pageSize,
+                                                                                      boolean eagerLoad){
+        CompletableFuture<Page<T>> page = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try{
+                page.complete(fetchPage(api, searchQuery, resourceFactory, defaultResource, offset, pageSize, eagerLoad));
+            } catch (IOException | SzurubooruHTTPException | RuntimeException | Error e) {
+                page.completeExceptionally(e);
             }
+        });
 
-            results.addAll(((List<Map<String, Object>>)page.get("results"))
-                    .stream()
-                    .map(x -> {
-                        try{
-                            return resourceConstructor.newInstance(api, x);
-                        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-                            return null;
-                        }
-                    })
-                    .toList());
+        // Cancelling the page interrupts the request in flight
+        page.whenComplete((x, e) -> {
+            if(page.isCancelled()) task.cancel(true);
+        });
+        return page;
+    }
+    protected static <T extends SzurubooruResource> PageInfo streamPage(SzurubooruAPI api,
+                                                                        String searchQuery,
+                                                                        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory,
+                                                                        T defaultResource,
+                                                                        int offset,
+                                                                        int pageSize,
+                                                                        boolean eagerLoad,
+                                                                        Consumer<T> consumer) throws IOException, SzurubooruHTTPException {
+        List<String> fields = eagerLoad? null : defaultResource.lazyLoadComponents();
+
+        return streamJsonPage(api, searchQuery, defaultResource.getClassUrlParts(), fields, offset, pageSize, x -> consumer.accept(resourceFactory.apply(api, x)));
+    }
+    protected static PageInfo streamJsonPage(SzurubooruAPI api,
+                                             String searchQuery,
+                                             List<String> classUrlParts,
+                                             List<String> fields,
+                                             int offset,
+                                             int pageSize,
+                                             Consumer<Map<String, Object>> consumer) throws IOException, SzurubooruHTTPException {
+        Map<String, String> urlQuery = new HashMap<>(Map.of("offset", offset + "", "limit", pageSize + ""));
+        if(searchQuery != null) urlQuery.put("query", searchQuery);
+        if(fields != null) urlQuery.put("fields", String.join(",", fields));
+
+        int[] count = {0};
+        Map<String, Object> page = api.callStreaming("GET", classUrlParts, urlQuery, null, "results", x -> {
+            consumer.accept(x);
+            count[0]++;
+        });
+
+        Object total = page.get("total");
+        return new PageInfo(count[0], total == null? count[0] : SzurubooruResource.getIntValue(total));
+    }
+
+    // Each result is copied into the list's arrays as soon as it is parsed, so no per-post map outlives its page
+    public static SzurubooruCompactPostList searchPostCompact(SzurubooruAPI api, String searchQuery, int pageSize) throws IOException, SzurubooruHTTPException {
+        SzurubooruCompactPostList results = new SzurubooruCompactPostList(api);
+
+        int offset = 0;
+        int total = Integer.MAX_VALUE;
+
+        while(offset < total){
+            PageInfo page = streamJsonPage(api, searchQuery, List.of("posts"), SzurubooruCompactPostList.FIELDS, offset, pageSize, results::addJson);
+            if(page.count() == 0) break;
+
+            offset += page.count();
+            total = page.total();
         }
 
+        results.trimToSize();
         return results;
     }
 
-    public static <T extends SzurubooruResource> List<T> searchUnpaged(SzurubooruAPI api, Class<T> resourceClass) throws IOException, SzurubooruHTTPException, InvocationTargetException, InstantiationException, IllegalAccessException, NoSuchMethodException {
+    public static <T extends SzurubooruResource> CompletableFuture<List<T>> searchGenericAsync(SzurubooruAsyncAPI asyncApi,
+                                                                                             String searchQuery,
+                                                                                             Class<T> resourceClass,
+                                                                                             int pageSize,
+                                                                                             boolean eagerLoad){
+        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        T defaultResource = resourceFactory.apply(asyncApi.getApi(), new HashMap<>());
+
+        return searchPageAsync(asyncApi, searchQuery, resourceFactory, defaultResource, pageSize, eagerLoad, 0, new ArrayList<>());
+    }
+    protected static <T extends SzurubooruResource> CompletableFuture<List<T>> searchPageAsync(SzurubooruAsyncAPI asyncApi,
+                                                                                             String searchQuery,
+                                                                                             BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory,
+                                                                                             T defaultResource,
+                                                                                             int pageSize,
+                                                                                             boolean eagerLoad,
+                                                                                             int offset,
+                                                                                             List<T> results){
+        Map<String, String> urlQuery = new HashMap<>(Map.of("offset", offset + "", "limit", pageSize + ""));
+        if(searchQuery != null) urlQuery.put("query", searchQuery);
+
+        if(!eagerLoad){
+            urlQuery.put("fields", String.join(",", defaultResource.lazyLoadComponents()));
+        }
 
-        Constructor<T> resourceConstructor = resourceClass.getDeclaredConstructor(SzurubooruAPI.class, Map.class);
-        T defaultResource = resourceConstructor.newInstance(api, new HashMap<>());
+        // Pages are chained rather than awaited, so no thread is parked while a page is in flight
+        return asyncApi.callAsync("GET", defaultResource.getClassUrlParts(), urlQuery, null)
+                .thenCompose(page -> {
+                    List<Map<String, Object>> pageResults = (List<Map<String, Object>>) page.get("results");
+                    int total = SzurubooruResource.getIntValue(page.get("total"));
+
+                    for(Map<String, Object> x:pageResults){
+                        results.add(resourceFactory.apply(asyncApi.getApi(), x));
+                    }
+
+                    int nextOffset = offset + pageResults.size();
+                    if(pageResults.isEmpty() || nextOffset >= total){
+                        return CompletableFuture.completedFuture(results);
+                    }
+
+                    return searchPageAsync(asyncApi, searchQuery, resourceFactory, defaultResource, pageSize, eagerLoad, nextOffset, results);
+                });
+    }
+
+    public static <T extends SzurubooruResource> List<T> searchUnpaged(SzurubooruAPI api, Class<T> resourceClass) throws IOException, SzurubooruHTTPException {
+        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        T defaultResource = resourceFactory.apply(api, new HashMap<>());
 
         Map<String, Object> page = api.call("GET", defaultResource.getClassUrlParts(), null, null);
 
         return ((List<Map<String, Object>>)page.get("results"))
                 .stream()
-                .map(x -> {
-                    try{
-                        return resourceConstructor.newInstance(api, x);
-                    } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-                        return null;
-                    }
-                })
+                .map(x -> resourceFactory.apply(api, x))
                 .toList();
     }
+    public static <T extends SzurubooruResource> CompletableFuture<List<T>> searchUnpagedAsync(SzurubooruAsyncAPI asyncApi, Class<T> resourceClass){
+        BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        T defaultResource = resourceFactory.apply(asyncApi.getApi(), new HashMap<>());
+
+        return asyncApi.callAsync("GET", defaultResource.getClassUrlParts(), null, null)
+                .thenApply(page -> ((List<Map<String, Object>>)page.get("results"))
+                        .stream()
+                        .map(x -> resourceFactory.apply(asyncApi.getApi(), x))
+                        .toList());
+    }
 }
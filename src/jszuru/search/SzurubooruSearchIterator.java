@@ -0,0 +1,56 @@
+package jszuru.search;
+
+import jszuru.SzurubooruAPI;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruResource;
+import jszuru.resources.SzurubooruResourceFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+@SuppressWarnings("unused")
+public class SzurubooruSearchIterator<T extends SzurubooruResource> extends SzurubooruPagedIterator<T> {
+    protected final SzurubooruAPI api;
+    protected final String searchQuery;
+    protected final BiFunction<SzurubooruAPI, Map<String, Object>, T> resourceFactory;
+    protected final T defaultResource;
+    protected final int pageSize;
+    protected final boolean eagerLoad;
+
+    protected int offset = 0;
+    protected int total = Integer.MAX_VALUE;
+
+    public SzurubooruSearchIterator(SzurubooruAPI api,
+                                    String searchQuery,
+                                    Class<T> resourceClass,
+                                    int pageSize,
+                                    boolean eagerLoad) {
+        this.api = api;
+        this.searchQuery = searchQuery;
+        this.resourceFactory = SzurubooruResourceFactory.get(resourceClass);
+        this.defaultResource = resourceFactory.apply(api, new HashMap<>());
+        this.pageSize = pageSize;
+        this.eagerLoad = eagerLoad;
+    }
+
+    @Override
+    protected List<T> fetchNextPage() throws IOException, SzurubooruHTTPException {
+        if(offset >= total) return null;
+
+        SzurubooruSearch.Page<T> page = SzurubooruSearch.fetchPage(api, searchQuery, resourceFactory, defaultResource, offset, pageSize, eagerLoad);
+        offset += page.results().size();
+        total = page.total();
+
+        return page.results();
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+    public int getTotal() {
+        return total;
+    }
+}
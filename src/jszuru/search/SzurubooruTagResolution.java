@@ -0,0 +1,52 @@
+package jszuru.search;
+
+import jszuru.resources.SzurubooruTag;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+@SuppressWarnings("unused")
+public class SzurubooruTagResolution {
+    protected Map<String, SzurubooruTag> found;
+    protected Set<String> missing;
+    protected Map<String, SzurubooruTag> created;
+    protected Map<String, Throwable> failed;
+
+    public SzurubooruTagResolution(Map<String, SzurubooruTag> found,
+                                   Set<String> missing,
+                                   Map<String, SzurubooruTag> created,
+                                   Map<String, Throwable> failed){
+        this.found = Collections.unmodifiableMap(found);
+        this.missing = Collections.unmodifiableSet(missing);
+        this.created = Collections.unmodifiableMap(created);
+        this.failed = Collections.unmodifiableMap(failed);
+    }
+
+    // Requested names that already existed, either as primary names or as aliases
+    public Map<String, SzurubooruTag> getFound() {
+        return found;
+    }
+    // Requested names that didn't exist, whether they were created afterwards or not
+    public Set<String> getMissing() {
+        return missing;
+    }
+    public Map<String, SzurubooruTag> getCreated() {
+        return created;
+    }
+    public Map<String, Throwable> getFailed() {
+        return failed;
+    }
+
+    // Found and created tags, keyed by requested name
+    public Map<String, SzurubooruTag> getResolved() {
+        Map<String, SzurubooruTag> resolved = new LinkedHashMap<>(found);
+        resolved.putAll(created);
+
+        return resolved;
+    }
+    public boolean isComplete() {
+        return failed.isEmpty() && missing.stream().allMatch(created::containsKey);
+    }
+}
@@ -0,0 +1,114 @@
+package jszuru;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local HTTP server standing in for a szurubooru instance, tests register a handler for each path they need.
+// Every request is recorded, so tests can check what the client actually sent
+public class StubServer implements AutoCloseable {
+    public record Request(String method, String path, Map<String, String> query, String range, String body){}
+
+    private static final String BODY_ATTRIBUTE = "jszuru.body";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    // The request body is read before the handler runs, handlers get it from here
+    public static String getBody(HttpExchange exchange){
+        return (String) exchange.getAttribute(BODY_ATTRIBUTE);
+    }
+    public static Map<String, String> parseQuery(HttpExchange exchange){
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if(raw == null) return query;
+
+        for(String pair:raw.split("&")){
+            String[] parts = pair.split("=", 2);
+            query.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                      parts.length > 1? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "");
+        }
+
+        return query;
+    }
+    public static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try(OutputStream output = exchange.getResponseBody()){
+            output.write(body);
+        }
+    }
+    public static void respondError(HttpExchange exchange, int status, String name, String description) throws IOException {
+        respond(exchange, status, "{\"name\":\"" + name + "\",\"description\":\"" + description + "\"}");
+    }
+
+    // Paths are matched by prefix, the longest registered prefix wins
+    public StubServer handle(String path, HttpHandler handler){
+        server.createContext(path, exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), parseQuery(exchange),
+                                     exchange.getRequestHeaders().getFirst("Range"), body));
+            exchange.setAttribute(BODY_ATTRIBUTE, body);
+
+            try{
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+
+        return this;
+    }
+
+    public String getBaseUrl(){
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+    public SzurubooruAPI.APIBuilder createApiBuilder(){
+        return new SzurubooruAPI.APIBuilder().setBaseUrl(this.getBaseUrl());
+    }
+    public SzurubooruAPI createApi() throws IOException {
+        try{
+            return this.createApiBuilder().build();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public List<Request> getRequests(){
+        synchronized(requests){
+            return new ArrayList<>(requests);
+        }
+    }
+    public List<Request> getRequests(String method, String path){
+        return this.getRequests()
+                .stream()
+                .filter(x -> x.method().equals(method) && x.path().equals(path))
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,155 @@
+package jszuru;
+
+import com.google.gson.Gson;
+import jszuru.exceptions.SzurubooruHTTPException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SzurubooruBulkTagEditTest {
+    private static final int POSTS = 30;
+
+    // Post ids mapped to their tags and version, as the server has them, guarded by the stub's lock
+    private final Map<Integer, List<String>> tags = new HashMap<>();
+    private final Map<Integer, Integer> versions = new HashMap<>();
+    private final Set<Integer> failing = new HashSet<>();
+
+    private StubServer server;
+    private SzurubooruAPI api;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for(int id = 1; id <= POSTS; id++){
+            // Every fifth post already has the tag
+            tags.put(id, new ArrayList<>(id % 5 == 0? List.of("base", "added") : List.of("base", "removed")));
+            versions.put(id, 1);
+        }
+
+        server = new StubServer()
+                .handle("/api/posts", exchange -> {
+                    String query = StubServer.parseQuery(exchange).getOrDefault("query", "");
+                    int limit = Integer.parseInt(StubServer.parseQuery(exchange).getOrDefault("limit", "100"));
+
+                    int max = POSTS;
+                    for(String token:query.split(" ")){
+                        if(token.startsWith("id:..")) max = Integer.parseInt(token.substring("id:..".length()));
+                    }
+
+                    List<String> results = new ArrayList<>();
+                    synchronized(this){
+                        for(int id = max; id >= 1 && results.size() < limit; id--) results.add(this.postJson(id));
+                    }
+
+                    StubServer.respond(exchange, 200, "{\"total\":" + max + ",\"results\":[" + String.join(",", results) + "]}");
+                })
+                .handle("/api/post/", exchange -> {
+                    int id = Integer.parseInt(exchange.getRequestURI().getPath().substring("/api/post/".length()));
+                    Map<String, Object> body = new Gson().fromJson(StubServer.getBody(exchange), Map.class);
+
+                    // Pushes finish in a different order than they were sent
+                    try{
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    synchronized(this){
+                        if(failing.contains(id)){
+                            StubServer.respondError(exchange, 400, "PostNotFoundError", "Post " + id + " not found.");
+                            return;
+                        }
+
+                        tags.put(id, ((List<?>) body.get("tags")).stream().map(SzurubooruBulkTagEditTest::tagName).collect(Collectors.toList()));
+                        versions.merge(id, 1, Integer::sum);
+                        StubServer.respond(exchange, 200, this.postJson(id));
+                    }
+                });
+        api = server.createApi();
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        api.close();
+        server.close();
+    }
+
+    private static String tagName(Object tag){
+        if(tag instanceof Map<?, ?> map) return ((List<?>) map.get("names")).get(0).toString();
+        return tag.toString();
+    }
+    private synchronized String postJson(int id){
+        String tagJson = tags.get(id)
+                .stream()
+                .map(x -> "{\"names\":[\"" + x + "\"],\"category\":\"default\"}")
+                .collect(Collectors.joining(","));
+
+        return "{\"id\":" + id + ",\"version\":" + versions.get(id) + ",\"tags\":[" + tagJson + "]}";
+    }
+    private SzurubooruBulkTagEdit edit(List<Integer> checkpoints){
+        return new SzurubooruBulkTagEdit(api, null)
+                .addTags("added")
+                .removeTags("REMOVED")
+                .setPageSize(7)
+                .setMaxConcurrency(4)
+                .setCheckpointListener(checkpoints::add);
+    }
+
+    @Test
+    void editsEveryPostAndSkipsPostsAlreadyDone() throws Throwable {
+        List<Integer> checkpoints = Collections.synchronizedList(new ArrayList<>());
+        SzurubooruBulkEditReport report = this.edit(checkpoints).run();
+
+        assertTrue(report.isSuccessful());
+        assertEquals(POSTS, report.getScanned());
+        assertEquals(POSTS / 5, report.getSkipped());
+        assertEquals(POSTS - POSTS / 5, report.getEdited());
+        assertEquals(1, report.getLastProcessedId());
+        assertEquals(POSTS - POSTS / 5, server.getRequests().stream().filter(x -> x.method().equals("PUT")).count());
+
+        synchronized(this){
+            tags.values().forEach(x -> assertEquals(List.of("base", "added"), x));
+        }
+
+        // The scan is by descending id, so the checkpoint only ever goes down
+        for(int i = 1; i < checkpoints.size(); i++) assertTrue(checkpoints.get(i) < checkpoints.get(i - 1));
+        assertEquals(1, checkpoints.get(checkpoints.size() - 1));
+    }
+
+    @Test
+    void checkpointStopsBeforeFirstFailedPost() throws Throwable {
+        synchronized(this){
+            failing.add(17);
+            failing.add(8);
+        }
+
+        List<Integer> checkpoints = Collections.synchronizedList(new ArrayList<>());
+        SzurubooruBulkEditReport report = this.edit(checkpoints).run();
+
+        assertEquals(Set.of(17, 8), report.getFailed().keySet());
+        assertInstanceOf(SzurubooruHTTPException.class, report.getFailed().get(17));
+        assertEquals(18, report.getLastProcessedId());
+        assertTrue(checkpoints.stream().allMatch(x -> x >= 18));
+
+        // Resuming retries the failures, posts edited in the first run are skipped
+        synchronized(this){
+            failing.clear();
+        }
+
+        SzurubooruBulkEditReport resumed = this.edit(new ArrayList<>()).startAfter(report.getLastProcessedId()).run();
+
+        assertTrue(resumed.isSuccessful());
+        assertEquals(17, resumed.getScanned());
+        assertEquals(2, resumed.getEdited());
+        assertEquals(1, resumed.getLastProcessedId());
+
+        synchronized(this){
+            tags.values().forEach(x -> assertEquals(List.of("base", "added"), x));
+        }
+    }
+}
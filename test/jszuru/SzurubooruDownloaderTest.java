@@ -0,0 +1,202 @@
+package jszuru;
+
+import jszuru.exceptions.SzurubooruHTTPException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SzurubooruDownloaderTest {
+    private static final String PATH = "/data/posts/1.png";
+
+    private final byte[] content = new byte[200_000];
+    private String checksum;
+
+    private volatile boolean honourRange = true;
+    private final AtomicBoolean dropNext = new AtomicBoolean();
+
+    private StubServer server;
+    private SzurubooruAPI api;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(1).nextBytes(content);
+        checksum = HexFormat.of().formatHex(SzurubooruDownloader.createDigest().digest(content));
+
+        server = new StubServer().handle("/data/", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int from = range != null && honourRange? Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)) : 0;
+
+            if(from >= content.length){
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            if(from > 0){
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + (content.length - 1) + "/" + content.length);
+                exchange.sendResponseHeaders(206, content.length - from);
+            }
+            else{
+                exchange.sendResponseHeaders(200, content.length);
+            }
+
+            // A dropped connection sends half of what it announced
+            int end = dropNext.getAndSet(false)? from + (content.length - from) / 2 : content.length;
+            OutputStream output = exchange.getResponseBody();
+            output.write(content, from, end - from);
+            output.flush();
+        });
+        api = server.createApi();
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        api.close();
+        server.close();
+    }
+
+    private String url() throws Exception {
+        return api.createDataUrl(PATH);
+    }
+    private Path target(){
+        return directory.resolve("1.png");
+    }
+    private Path part(){
+        return directory.resolve("1.png" + SzurubooruDownloader.PART_SUFFIX);
+    }
+    private List<StubServer.Request> requests(){
+        return server.getRequests("GET", PATH);
+    }
+
+    @Test
+    void downloadsWholeFile() throws Throwable {
+        AtomicLong transferred = new AtomicLong();
+        AtomicLong total = new AtomicLong();
+
+        long size = new SzurubooruDownloader(api).download(url(), target(), checksum, (x, y) -> {
+            transferred.set(x);
+            total.set(y);
+        });
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertFalse(Files.exists(part()));
+        assertEquals(content.length, transferred.get());
+        assertEquals(content.length, total.get());
+        assertNull(requests().get(0).range());
+    }
+
+    @Test
+    void resumesPartFileWithRange() throws Throwable {
+        Files.write(part(), Arrays.copyOf(content, 1000));
+
+        long size = new SzurubooruDownloader(api).download(url(), target(), checksum, null);
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertEquals("bytes=1000-", requests().get(0).range());
+        assertEquals(1, requests().size());
+    }
+
+    @Test
+    void treatsUnsatisfiableRangeAsCompletePart() throws Throwable {
+        Files.write(part(), content);
+
+        long size = new SzurubooruDownloader(api).download(url(), target(), checksum, null);
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertFalse(Files.exists(part()));
+        assertEquals(1, requests().size());
+    }
+
+    @Test
+    void startsOverWhenServerIgnoresRange() throws Throwable {
+        honourRange = false;
+        Files.write(part(), Arrays.copyOf(content, 1000));
+
+        long size = new SzurubooruDownloader(api).download(url(), target(), checksum, null);
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertEquals("bytes=1000-", requests().get(0).range());
+    }
+
+    @Test
+    void resumesAfterDroppedConnection() throws Throwable {
+        dropNext.set(true);
+
+        long size = new SzurubooruDownloader(api).download(url(), target(), checksum, null);
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertEquals(2, requests().size());
+        assertNull(requests().get(0).range());
+        assertEquals("bytes=" + content.length / 2 + "-", requests().get(1).range());
+    }
+
+    @Test
+    void keepsPartWhenRequestFailsBeforeAnyByte() throws Throwable {
+        Files.write(part(), Arrays.copyOf(content, 1000));
+        AtomicBoolean failNext = new AtomicBoolean(true);
+
+        SzurubooruDownloader downloader = new SzurubooruDownloader(api){
+            @Override
+            protected long transfer(String url, FileChannel channel, long offset, MessageDigest digest,
+                                    SzurubooruDownloadListener listener) throws IOException, SzurubooruHTTPException {
+                if(failNext.getAndSet(false)) throw new IOException("Connection refused");
+                return super.transfer(url, channel, offset, digest, listener);
+            }
+        };
+        downloader.download(url(), target(), checksum, null);
+
+        assertArrayEquals(content, Files.readAllBytes(target()));
+        assertEquals("bytes=1000-", requests().get(0).range());
+    }
+
+    @Test
+    void givesUpAfterMaxResumeAttempts() throws Throwable {
+        dropNext.set(true);
+
+        SzurubooruDownloader downloader = new SzurubooruDownloader(api).setMaxResumeAttempts(0);
+        assertThrows(IOException.class, () -> downloader.download(url(), target(), checksum, null));
+
+        // What made it through is kept for the next attempt
+        assertEquals(content.length / 2, Files.size(part()));
+        assertFalse(Files.exists(target()));
+
+        downloader.download(url(), target(), checksum, null);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+    }
+
+    @Test
+    void deletesPartOnChecksumMismatch() throws Throwable {
+        byte[] corrupt = Arrays.copyOf(content, 1000);
+        corrupt[0]++;
+        Files.write(part(), corrupt);
+
+        SzurubooruDownloader downloader = new SzurubooruDownloader(api);
+        assertThrows(IOException.class, () -> downloader.download(url(), target(), checksum, null));
+        assertFalse(Files.exists(part()));
+        assertFalse(Files.exists(target()));
+
+        downloader.download(url(), target(), checksum, null);
+        assertArrayEquals(content, Files.readAllBytes(target()));
+    }
+}
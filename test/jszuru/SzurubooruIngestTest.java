@@ -0,0 +1,164 @@
+package jszuru;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.PostSafety;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(60)
+class SzurubooruIngestTest {
+    // Content of the post someone else uploads between the check and the creation
+    private static final String RACING = "racing";
+
+    // Checksums mapped to the id of the post having that content, guarded by the stub's lock
+    private final Map<String, Integer> posts = new HashMap<>();
+    private final Map<String, String> uploads = new HashMap<>();
+    private final Map<String, String> checksums = new HashMap<>();
+    private int nextPostId = 1;
+    private volatile boolean lookupsFail = false;
+
+    private StubServer server;
+    private SzurubooruAPI api;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubServer()
+                .handle("/api/uploads", exchange -> {
+                    String body = StubServer.getBody(exchange);
+                    String content = checksums.keySet().stream().filter(body::contains).findFirst().orElseThrow();
+
+                    synchronized(this){
+                        String token = "token" + uploads.size();
+                        uploads.put(token, content);
+                        StubServer.respond(exchange, 200, "{\"token\":\"" + token + "\"}");
+                    }
+                })
+                .handle("/api/posts", exchange -> {
+                    if(exchange.getRequestMethod().equals("POST")){
+                        this.createPost(exchange, new Gson().fromJson(StubServer.getBody(exchange), Map.class));
+                        return;
+                    }
+                    if(lookupsFail){
+                        StubServer.respondError(exchange, 500, "InternalError", "Database is gone.");
+                        return;
+                    }
+
+                    String query = StubServer.parseQuery(exchange).get("query");
+                    List<String> wanted = List.of(query.substring("content-checksum:".length()).split(","));
+
+                    List<String> results = new ArrayList<>();
+                    synchronized(this){
+                        for(String checksum:wanted){
+                            if(posts.containsKey(checksum)){
+                                results.add("{\"id\":" + posts.get(checksum) + ",\"checksum\":\"" + checksum + "\"}");
+                            }
+                        }
+                    }
+
+                    StubServer.respond(exchange, 200, "{\"total\":" + results.size() + ",\"results\":[" + String.join(",", results) + "]}");
+                });
+        api = server.createApi();
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        api.close();
+        server.close();
+    }
+
+    private synchronized void createPost(HttpExchange exchange, Map<String, Object> body) throws IOException {
+        String content = uploads.get((String) body.get("contentToken"));
+        String checksum = checksums.get(content);
+
+        if(content.equals(RACING) && !posts.containsKey(checksum)){
+            posts.put(checksum, 500);
+            StubServer.respondError(exchange, 409, SzurubooruIngest.ALREADY_UPLOADED_ERROR_NAME, "Post already uploaded.");
+            return;
+        }
+
+        int id = nextPostId++;
+        posts.put(checksum, id);
+        StubServer.respond(exchange, 200, "{\"id\":" + id + ",\"version\":1,\"safety\":\"" + body.get("safety") + "\"}");
+    }
+    private Path file(String name, String content) throws IOException {
+        Path file = directory.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+
+        synchronized(this){
+            checksums.put(content, SzurubooruIngest.checksum(file));
+        }
+        return file;
+    }
+    private synchronized void existing(String content, int postId){
+        posts.put(checksums.get(content), postId);
+    }
+    private static List<SzurubooruIngest.Item> items(Path... files){
+        return Arrays.stream(files).map(x -> new SzurubooruIngest.Item(x, PostSafety.SAFE)).toList();
+    }
+    private static SzurubooruIngest ingest(SzurubooruAPI api){
+        // Small batches and queues, so every stage hands work over several times
+        return api.ingest().setHashThreads(3).setUploadThreads(2).setCreateThreads(2).setQueueCapacity(2).setCheckBatchSize(2);
+    }
+
+    @Test
+    void accountsForEveryFile() throws Exception {
+        Path alpha = this.file("alpha.png", "alpha");
+        Path bravo = this.file("bravo.png", "bravo");
+        Path copy = this.file("copy.png", "alpha");
+        Path existing = this.file("existing.png", "existing");
+        Path racing = this.file("racing.png", RACING);
+        Path missing = directory.resolve("missing.png");
+        this.existing("existing", 100);
+
+        SzurubooruIngestReport report = ingest(api).run(items(alpha, bravo, copy, existing, racing, missing));
+
+        // Which of the two identical files is uploaded depends on which one is hashed first
+        Path duplicate = report.getDuplicates().get(0);
+        assertTrue(duplicate.equals(alpha) || duplicate.equals(copy));
+        assertEquals(Set.of(alpha, copy, bravo), union(report.getCreated().keySet(), Set.of(duplicate)));
+        assertEquals(Map.of(existing, 100, racing, 500), report.getExisting());
+        assertEquals(Set.of(missing), report.getFailed().keySet());
+
+        assertEquals(6, report.getCreated().size() + report.getExisting().size() + report.getDuplicates().size() + report.getFailed().size());
+        assertEquals(5, report.getHashing().getProcessed());
+        assertEquals(3, report.getUploading().getProcessed());
+        assertEquals(2, report.getCreating().getProcessed());
+        assertEquals(3, server.getRequests("POST", "/api/uploads").size());
+    }
+
+    @Test
+    void failingLookupFailsItsFilesWithoutHanging() throws Exception {
+        lookupsFail = true;
+
+        List<Path> files = new ArrayList<>();
+        for(int i = 0; i < 7; i++) files.add(this.file(i + ".png", "content" + i));
+
+        SzurubooruIngestReport report = ingest(api).run(items(files.toArray(Path[]::new)));
+
+        assertEquals(new HashSet<>(files), report.getFailed().keySet());
+        assertTrue(report.getFailed().values().stream().allMatch(x -> x instanceof SzurubooruHTTPException));
+        assertTrue(report.getCreated().isEmpty());
+        assertTrue(server.getRequests("POST", "/api/uploads").isEmpty());
+    }
+
+    private static <T> Set<T> union(Set<T> first, Set<T> second){
+        return Stream.concat(first.stream(), second.stream()).collect(Collectors.toSet());
+    }
+}
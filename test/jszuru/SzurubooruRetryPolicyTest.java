@@ -0,0 +1,138 @@
+package jszuru;
+
+import com.google.gson.Gson;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruPost;
+import jszuru.resources.SzurubooruTag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SzurubooruRetryPolicyTest {
+    private static final String PATH = "/api/post/1";
+
+    // Post 1 as the server has it, guarded by the stub's lock
+    private int version = 1;
+    private final List<String> tags = new ArrayList<>(List.of("base"));
+    private boolean editedBeforeEveryPush = false;
+
+    private StubServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubServer().handle(PATH, exchange -> {
+            synchronized(this){
+                if(exchange.getRequestMethod().equals("PUT")){
+                    // Someone else always gets there first
+                    if(editedBeforeEveryPush) this.editElsewhere("other" + version);
+
+                    Map<String, Object> body = new Gson().fromJson(StubServer.getBody(exchange), Map.class);
+
+                    if(((Number) body.get("version")).intValue() != version){
+                        StubServer.respondError(exchange, 409, "IntegrityError", "Someone else modified this in the meantime. Please try again.");
+                        return;
+                    }
+
+                    tags.clear();
+                    tags.addAll((List<String>) body.get("tags"));
+                    version++;
+                }
+                StubServer.respond(exchange, 200, this.postJson());
+            }
+        });
+    }
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private synchronized void editElsewhere(String tag){
+        tags.add(tag);
+        version++;
+    }
+    private synchronized String postJson(){
+        String tagJson = tags.stream()
+                .map(x -> "{\"names\":[\"" + x + "\"],\"category\":\"default\",\"usages\":1}")
+                .collect(Collectors.joining(","));
+
+        return "{\"id\":1,\"version\":" + version + ",\"safety\":\"safe\",\"tags\":[" + tagJson + "]}";
+    }
+    private SzurubooruAPI createApi(SzurubooruRetryPolicy retryPolicy) throws IOException, URISyntaxException {
+        return server.createApiBuilder().setRetryPolicy(retryPolicy).build();
+    }
+    private static SzurubooruRetryPolicy fastRetries(){
+        return new SzurubooruRetryPolicy().setBackoff(Duration.ofMillis(1), Duration.ofMillis(5), 2);
+    }
+    private static void addTag(SzurubooruAPI api, SzurubooruPost post, String name){
+        List<SzurubooruTag> postTags = post.getTags();
+        postTags.add(new SzurubooruTag(api, Map.of("names", List.of(name), "category", "default")));
+        post.setTags(postTags);
+    }
+
+    @Test
+    void mergesPendingEditsAfterVersionConflict() throws Throwable {
+        SzurubooruRetryPolicy retryPolicy = fastRetries();
+
+        try(SzurubooruAPI api = this.createApi(retryPolicy)){
+            SzurubooruPost post = api.getPost(1);
+            this.editElsewhere("theirs");
+
+            addTag(api, post, "ours");
+            post.push();
+
+            assertEquals(List.of("base", "theirs", "ours"), post.getTags().stream().map(SzurubooruTag::getPrimaryName).toList());
+        }
+
+        synchronized(this){
+            assertEquals(List.of("base", "theirs", "ours"), tags);
+            assertEquals(3, version);
+        }
+        assertEquals(2, server.getRequests("PUT", PATH).size());
+        assertEquals(1, retryPolicy.getConflicts());
+        assertEquals(1, retryPolicy.getResolved());
+        assertEquals(0, retryPolicy.getExhausted());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Throwable {
+        SzurubooruRetryPolicy retryPolicy = fastRetries().setMaxAttempts(3);
+
+        try(SzurubooruAPI api = this.createApi(retryPolicy)){
+            SzurubooruPost post = api.getPost(1);
+            synchronized(this){
+                editedBeforeEveryPush = true;
+            }
+
+            addTag(api, post, "ours");
+            SzurubooruHTTPException exception = assertThrows(SzurubooruHTTPException.class, post::push);
+            assertEquals(SzurubooruRetryPolicy.CONFLICT_ERROR_NAME, exception.getErrorName());
+        }
+
+        assertEquals(3, server.getRequests("PUT", PATH).size());
+        assertEquals(3, retryPolicy.getConflicts());
+        assertEquals(1, retryPolicy.getExhausted());
+    }
+
+    @Test
+    void failsRightAwayWithoutRetryPolicy() throws Throwable {
+        try(SzurubooruAPI api = this.createApi(null)){
+            SzurubooruPost post = api.getPost(1);
+            this.editElsewhere("theirs");
+
+            addTag(api, post, "ours");
+            assertThrows(SzurubooruHTTPException.class, post::push);
+        }
+
+        assertEquals(1, server.getRequests("PUT", PATH).size());
+    }
+}
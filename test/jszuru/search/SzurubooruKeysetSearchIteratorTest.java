@@ -0,0 +1,112 @@
+package jszuru.search;
+
+import jszuru.StubServer;
+import jszuru.SzurubooruAPI;
+import jszuru.resources.SzurubooruPost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SzurubooruKeysetSearchIteratorTest {
+    private static final int POSTS = 250;
+
+    private StubServer server;
+    private SzurubooruAPI api;
+
+    // Serves posts 1 to POSTS, honouring the id: range and sort:id tokens keyset scans rely on
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubServer().handle("/api/posts", exchange -> {
+            Map<String, String> urlQuery = StubServer.parseQuery(exchange);
+            String query = urlQuery.getOrDefault("query", "");
+            int limit = Integer.parseInt(urlQuery.getOrDefault("limit", "100"));
+            int offset = Integer.parseInt(urlQuery.getOrDefault("offset", "0"));
+
+            int min = 1, max = POSTS;
+            for(String token:query.split(" ")){
+                if(!token.startsWith("id:")) continue;
+
+                String range = token.substring("id:".length());
+                if(range.startsWith("..")) max = Integer.parseInt(range.substring(2));
+                else min = Integer.parseInt(range.substring(0, range.length() - 2));
+            }
+
+            List<Integer> ids = new ArrayList<>(IntStream.rangeClosed(min, max).boxed().toList());
+            if(!query.contains("sort:id,asc")) Collections.reverse(ids);
+
+            StringBuilder results = new StringBuilder();
+            for(int i = offset; i < Math.min(ids.size(), offset + limit); i++){
+                if(i > offset) results.append(',');
+                results.append("{\"id\":").append(ids.get(i)).append(",\"version\":1}");
+            }
+
+            StubServer.respond(exchange, 200, "{\"total\":" + ids.size() + ",\"results\":[" + results + "]}");
+        });
+        api = server.createApi();
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        api.close();
+        server.close();
+    }
+
+    private SzurubooruKeysetSearchIterator<SzurubooruPost> iterate(String query, boolean ascending, Integer startAfterId){
+        return SzurubooruSearch.iterateGenericKeyset(api, query, SzurubooruPost.class, 100, false, ascending, startAfterId);
+    }
+    private static List<Integer> drain(SzurubooruKeysetSearchIterator<SzurubooruPost> iterator){
+        List<Integer> ids = new ArrayList<>();
+        iterator.forEachRemaining(x -> ids.add(x.getId()));
+        return ids;
+    }
+
+    @Test
+    void pagesByIdInsteadOfOffset() {
+        List<Integer> ids = drain(this.iterate("safety:safe", false, null));
+
+        assertEquals(IntStream.rangeClosed(1, POSTS).map(x -> POSTS + 1 - x).boxed().toList(), ids);
+
+        List<StubServer.Request> requests = server.getRequests("GET", "/api/posts");
+        assertEquals(3, requests.size());
+        assertTrue(requests.stream().allMatch(x -> x.query().get("offset").equals("0")));
+        assertEquals("safety:safe sort:id", requests.get(0).query().get("query"));
+        assertEquals("safety:safe sort:id id:..150", requests.get(1).query().get("query"));
+        assertEquals("safety:safe sort:id id:..50", requests.get(2).query().get("query"));
+    }
+
+    @Test
+    void scansAscendingAfterStartId() {
+        List<Integer> ids = drain(this.iterate(null, true, 200));
+
+        assertEquals(IntStream.rangeClosed(201, POSTS).boxed().toList(), ids);
+        assertEquals("sort:id,asc id:201..", server.getRequests("GET", "/api/posts").get(0).query().get("query"));
+    }
+
+    @Test
+    void lastIdResumesRightAfterTheLastConsumedPost() {
+        SzurubooruKeysetSearchIterator<SzurubooruPost> iterator = this.iterate(null, false, null);
+        for(int i = 0; i < 15; i++) iterator.next();
+
+        // The whole first page was fetched, but only 15 posts were handed out
+        assertEquals(POSTS - 14, iterator.getLastId());
+
+        List<Integer> resumed = drain(this.iterate(null, false, iterator.getLastId()));
+        assertEquals(POSTS - 15, resumed.get(0));
+        assertEquals(POSTS - 15, resumed.size());
+    }
+
+    @Test
+    void rejectsQueriesWithTheirOwnSort() {
+        assertThrows(IllegalArgumentException.class, () -> this.iterate("sort:score", false, null));
+        assertThrows(IllegalArgumentException.class, () -> this.iterate("tag -sort:date", false, null));
+        assertTrue(server.getRequests().isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package jszuru.search;
+
+import jszuru.StubServer;
+import jszuru.SzurubooruAPI;
+import jszuru.exceptions.SzurubooruHTTPException;
+import jszuru.resources.SzurubooruPost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SzurubooruPrefetchingSearchIteratorTest {
+    private static final int POSTS = 230;
+
+    // Like a real server, pages are capped below what may be requested
+    private volatile int maxPageSize = 100;
+    private volatile int failAtOffset = -1;
+
+    private StubServer server;
+    private SzurubooruAPI api;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubServer().handle("/api/posts", exchange -> {
+            Map<String, String> urlQuery = StubServer.parseQuery(exchange);
+            int limit = Math.min(maxPageSize, Integer.parseInt(urlQuery.getOrDefault("limit", "100")));
+            int offset = Integer.parseInt(urlQuery.getOrDefault("offset", "0"));
+
+            if(offset == failAtOffset){
+                StubServer.respondError(exchange, 400, "SearchError", "Something broke");
+                return;
+            }
+
+            StringBuilder results = new StringBuilder();
+            for(int i = offset; i < Math.min(POSTS, offset + limit); i++){
+                if(i > offset) results.append(',');
+                results.append("{\"id\":").append(i + 1).append(",\"version\":1}");
+            }
+
+            StubServer.respond(exchange, 200, "{\"total\":" + POSTS + ",\"results\":[" + results + "]}");
+        });
+        api = server.createApi();
+    }
+    @AfterEach
+    void tearDown() throws IOException {
+        api.close();
+        server.close();
+    }
+
+    private SzurubooruPrefetchingSearchIterator<SzurubooruPost> iterate(int pageSize){
+        return SzurubooruSearch.iterateGenericPrefetching(api, null, SzurubooruPost.class, pageSize, false, 3);
+    }
+    private static void assertReleased(SzurubooruPrefetchingSearchIterator<?> iterator) throws InterruptedException {
+        assertTrue(iterator.executor.isShutdown());
+        assertTrue(iterator.executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void returnsEveryPostInOrderAndReleasesThreads() throws InterruptedException {
+        SzurubooruPrefetchingSearchIterator<SzurubooruPost> iterator = this.iterate(50);
+
+        List<Integer> ids = new ArrayList<>();
+        iterator.forEachRemaining(x -> ids.add(x.getId()));
+
+        assertEquals(IntStream.rangeClosed(1, POSTS).boxed().toList(), ids);
+        assertReleased(iterator);
+    }
+
+    @Test
+    void reschedulesWhenServerCapsPageSize() throws InterruptedException {
+        maxPageSize = 40;
+        SzurubooruPrefetchingSearchIterator<SzurubooruPost> iterator = this.iterate(100);
+
+        List<Integer> ids = new ArrayList<>();
+        iterator.forEachRemaining(x -> ids.add(x.getId()));
+
+        assertEquals(IntStream.rangeClosed(1, POSTS).boxed().toList(), ids);
+        assertReleased(iterator);
+
+        // Once the cap is known every page is requested at a multiple of it
+        List<StubServer.Request> requests = server.getRequests("GET", "/api/posts");
+        assertTrue(requests.stream()
+                .map(x -> Integer.parseInt(x.query().get("offset")))
+                .filter(x -> x > 0)
+                .allMatch(x -> x % 40 == 0));
+    }
+
+    @Test
+    void failingPageSurfacesHttpExceptionAndReleasesThreads() throws InterruptedException {
+        failAtOffset = 100;
+        SzurubooruPrefetchingSearchIterator<SzurubooruPost> iterator = this.iterate(50);
+
+        List<Integer> ids = new ArrayList<>();
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> iterator.forEachRemaining(x -> ids.add(x.getId())));
+
+        SzurubooruHTTPException cause = assertInstanceOf(SzurubooruHTTPException.class, exception.getCause());
+        assertEquals("SearchError", cause.getErrorName());
+        assertEquals(IntStream.rangeClosed(1, 100).boxed().toList(), ids);
+        assertFalse(iterator.hasNext());
+        assertReleased(iterator);
+    }
+
+    @Test
+    void closeStopsEarly() throws InterruptedException {
+        SzurubooruPrefetchingSearchIterator<SzurubooruPost> iterator = this.iterate(50);
+        assertEquals(1, iterator.next().getId());
+
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        assertReleased(iterator);
+    }
+}